@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.deidentifier.arx.criteria.AverageReidentificationRisk;
 import org.deidentifier.arx.criteria.DDisclosurePrivacy;
 import org.deidentifier.arx.criteria.DPresence;
 import org.deidentifier.arx.criteria.EDDifferentialPrivacy;
@@ -98,6 +99,22 @@ public class ARXConfiguration implements Serializable, Cloneable {
             return config.getPrivacyModelsAsArray();
         }
 
+        /**
+         * Returns the attribute weights
+         * @return
+         */
+        public Map<String, Double> getAttributeWeights() {
+            return config.getAttributeWeights();
+        }
+
+        /**
+         * Returns the cost/benefit configuration
+         * @return
+         */
+        public ARXCostBenefitConfiguration getCostBenefitConfiguration() {
+            return config.getCostBenefitConfiguration();
+        }
+
         /**
          * Returns all criteria.
          * @return
@@ -136,6 +153,22 @@ public class ARXConfiguration implements Serializable, Cloneable {
             return config.getQualityModel();
         }
 
+        /**
+         * Returns the quality models which are evaluated in addition to the quality model used for optimization
+         * @return
+         */
+        public List<Metric<?>> getSecondaryQualityModels() {
+            return config.getSecondaryQualityModels();
+        }
+
+        /**
+         * Returns the threshold models which are evaluated in addition to the privacy models
+         * @return
+         */
+        public List<PrivacyCriterion> getThresholdModels() {
+            return config.getThresholdModels();
+        }
+
         /**
          * Returns the minimal size of an equivalence class induced by the contained criteria.
          * @return If k-anonymity is contained, k is returned. If l-diversity is contained, l is returned.
@@ -204,6 +237,89 @@ public class ARXConfiguration implements Serializable, Cloneable {
             return config.getSuppressedAttributeTypes();
         }
 
+        /**
+         * Returns the upper bound for the memory consumed by snapshots in the history, in bytes
+         * @return
+         */
+        public long getHistoryMemoryLimit() {
+            return config.getHistoryMemoryLimit();
+        }
+
+        /**
+         * Returns the number of events retained in the search trace, 0 if no trace is recorded
+         * @return
+         */
+        public int getSearchTraceSize() {
+            return config.getSearchTraceSize();
+        }
+
+        /**
+         * Returns whether the storage strategy of the history is adjusted at runtime
+         * @return
+         */
+        public boolean isHistoryAdaptive() {
+            return config.isHistoryAdaptive();
+        }
+
+        /**
+         * Returns whether the results of checks are cached across anonymizations
+         * @return
+         */
+        public boolean isTransformationCacheEnabled() {
+            return config.isTransformationCacheEnabled();
+        }
+
+        /**
+         * Returns whether success probabilities are derived from census data
+         * @return
+         */
+        public boolean isCensusDataEnabled() {
+            return config.isCensusDataEnabled();
+        }
+
+        /**
+         * Returns whether a simplified expression is used for computing entropy-based information loss
+         * @return
+         */
+        public boolean isEntropyExpressionSimplified() {
+            return config.isEntropyExpressionSimplified();
+        }
+
+        /**
+         * Returns whether the search algorithm prunes transformations based on lower bounds of information loss.
+         * This is disabled, if secondary quality models or threshold models are specified.
+         * @return
+         */
+        public boolean isLowerBoundPruningEnabled() {
+            return config.isLowerBoundPruningEnabled() && !isExhaustiveSearchRequired();
+        }
+
+        /**
+         * Returns whether the profitability models implement a naive version of the "No-Attack" variant
+         * @return
+         */
+        public boolean isNaiveNoAttackEnabled() {
+            return config.isNaiveNoAttackEnabled();
+        }
+
+        /**
+         * Returns whether the search algorithm ignores monotonicity of privacy and utility models. This is enforced,
+         * if secondary quality models or threshold models are specified, as they must be evaluated for all transformations.
+         * @return
+         */
+        public boolean isNonMonotonicSearchEnforced() {
+            return config.isNonMonotonicSearchEnforced() || isExhaustiveSearchRequired();
+        }
+
+        /**
+         * Returns whether all transformations must be checked, because secondary quality models
+         * or threshold models are specified
+         * @return
+         */
+        public boolean isExhaustiveSearchRequired() {
+            return !config.getSecondaryQualityModels().isEmpty() || !config.getThresholdModels().isEmpty();
+        }
+
         /**
          * Is practical monotonicity assumed.
          *
@@ -374,6 +490,39 @@ public class ARXConfiguration implements Serializable, Cloneable {
     /** Cost/benefit configuration */
     private ARXCostBenefitConfiguration        costBenefitConfiguration                         = ARXCostBenefitConfiguration.create();
 
+    /** Upper bound for the memory consumed by snapshots in the history, in bytes */
+    private Long                               historyMemoryLimit                               = Long.MAX_VALUE;
+
+    /** Should the storage strategy of the history be adjusted to observed hit rates */
+    private Boolean                            historyAdaptive                                  = false;
+
+    /** Should results of checking transformations be cached across anonymizations */
+    private Boolean                            transformationCacheEnabled                       = false;
+
+    /** Number of events retained in the search trace, 0 if no trace is recorded */
+    private Integer                            searchTraceSize                                  = 0;
+
+    /** Should success probabilities be derived from census data */
+    private Boolean                            censusDataEnabled                                = false;
+
+    /** Should a simplified expression be used for computing entropy-based information loss */
+    private Boolean                            entropyExpressionSimplified                      = true;
+
+    /** Should transformations be pruned based on lower bounds */
+    private Boolean                            lowerBoundPruningEnabled                         = true;
+
+    /** Should the profitability models implement a naive version of the "No-Attack" variant */
+    private Boolean                            naiveNoAttackEnabled                             = false;
+
+    /** Should the search algorithm ignore monotonicity */
+    private Boolean                            nonMonotonicSearchEnforced                       = false;
+
+    /** Quality models which are evaluated in addition to the quality model used for optimization */
+    private List<Metric<?>>                    secondaryQualityModels                           = new ArrayList<Metric<?>>();
+
+    /** Threshold models which are evaluated in addition to the privacy models */
+    private List<PrivacyCriterion>             thresholdModels                                  = new ArrayList<PrivacyCriterion>();
+
     /**
      * Creates a new configuration without tuple suppression.
      */
@@ -426,6 +575,46 @@ public class ARXConfiguration implements Serializable, Cloneable {
         return addPrivacyModel(c);
     }
         
+    /**
+     * Adds a quality model which is evaluated in addition to the quality model used for optimization.
+     * It is evaluated for every transformation which fulfills the privacy model and the optimum is
+     * returned by ARXResult.getGlobalOptimum(Metric). This requires checking all transformations,
+     * which means that monotonicity and lower bounds will not be used for pruning the search space.
+     *
+     * @param metric
+     * @return
+     */
+    public ARXConfiguration addSecondaryQualityModel(Metric<?> metric) {
+        if (metric == null) {
+            throw new NullPointerException("Metric must not be null");
+        }
+        this.getSecondaryQualityModels().add(metric);
+        return this;
+    }
+
+    /**
+     * Adds a threshold model, i.e. k-anonymity or average re-identification risk, which is evaluated in
+     * addition to the privacy models. The model is enforced by suppressing the smallest equivalence classes
+     * of each transformation, for which the quality models are then evaluated. All threshold models are
+     * evaluated with the same groupify operation and the optima are returned by ARXResult.getGlobalOptimum(
+     * PrivacyCriterion, Metric). This requires checking all transformations, which means that monotonicity
+     * and lower bounds will not be used for pruning the search space. Suppression is simulated, so the
+     * results are not guaranteed to equal those of a separate anonymization with the model as privacy model.
+     *
+     * @param c
+     * @return
+     */
+    public ARXConfiguration addThresholdModel(PrivacyCriterion c) {
+        if (c == null) {
+            throw new NullPointerException("Threshold model must not be null");
+        }
+        if (!(c instanceof KAnonymity) && !(c instanceof AverageReidentificationRisk)) {
+            throw new IllegalArgumentException("Only k-anonymity and average re-identification risk are supported as threshold models");
+        }
+        this.getThresholdModels().add(c);
+        return this;
+    }
+
     /**
      * Adds a privacy model to the configuration.
      *
@@ -513,6 +702,17 @@ public class ARXConfiguration implements Serializable, Cloneable {
         result.heuristicSearchTimeLimit = this.heuristicSearchTimeLimit;
         result.utilityBasedMicroaggregation = this.utilityBasedMicroaggregation;
         result.costBenefitConfiguration = this.getCostBenefitConfiguration().clone();
+        result.historyMemoryLimit = this.getHistoryMemoryLimit();
+        result.historyAdaptive = this.isHistoryAdaptive();
+        result.transformationCacheEnabled = this.isTransformationCacheEnabled();
+        result.searchTraceSize = this.getSearchTraceSize();
+        result.censusDataEnabled = this.isCensusDataEnabled();
+        result.entropyExpressionSimplified = this.isEntropyExpressionSimplified();
+        result.lowerBoundPruningEnabled = this.isLowerBoundPruningEnabled();
+        result.naiveNoAttackEnabled = this.isNaiveNoAttackEnabled();
+        result.nonMonotonicSearchEnforced = this.isNonMonotonicSearchEnforced();
+        result.secondaryQualityModels = new ArrayList<Metric<?>>(this.getSecondaryQualityModels());
+        result.thresholdModels = new ArrayList<PrivacyCriterion>(this.getThresholdModels());
         if (this.attributeWeights != null) {
             result.attributeWeights = new HashMap<String, Double>(this.attributeWeights);
         } else {
@@ -650,6 +850,18 @@ public class ARXConfiguration implements Serializable, Cloneable {
         return this.heuristicSearchTimeLimit;
     }
     
+    /**
+     * Returns the upper bound for the memory consumed by snapshots in the history, in bytes.
+     * The default is Long.MAX_VALUE, i.e. no limit.
+     * @return
+     */
+    public long getHistoryMemoryLimit() {
+        if (this.historyMemoryLimit == null) {
+            this.historyMemoryLimit = Long.MAX_VALUE;
+        }
+        return this.historyMemoryLimit;
+    }
+
     /**
      * Returns the maximum number of allowed outliers.
      *
@@ -786,6 +998,28 @@ public class ARXConfiguration implements Serializable, Cloneable {
         return this.metric;
     }
 
+    /**
+     * Returns the quality models which are evaluated in addition to the quality model used for optimization
+     * @return
+     */
+    public List<Metric<?>> getSecondaryQualityModels() {
+        if (this.secondaryQualityModels == null) {
+            this.secondaryQualityModels = new ArrayList<Metric<?>>();
+        }
+        return this.secondaryQualityModels;
+    }
+
+    /**
+     * Returns the threshold models which are evaluated in addition to the privacy models
+     * @return
+     */
+    public List<PrivacyCriterion> getThresholdModels() {
+        if (this.thresholdModels == null) {
+            this.thresholdModels = new ArrayList<PrivacyCriterion>();
+        }
+        return this.thresholdModels;
+    }
+
     /**
      * Return journalist risk threshold, 1 if there is none
      * @return
@@ -821,6 +1055,18 @@ public class ARXConfiguration implements Serializable, Cloneable {
         }
         return risk;
     }
+
+    /**
+     * Returns the number of events retained in the search trace. The default is 0,
+     * i.e. no trace is recorded.
+     * @return
+     */
+    public int getSearchTraceSize() {
+        if (this.searchTraceSize == null) {
+            this.searchTraceSize = 0;
+        }
+        return this.searchTraceSize;
+    }
     
     /**
      * Returns whether values of the given attribute type will be replaced by the suppression 
@@ -845,6 +1091,79 @@ public class ARXConfiguration implements Serializable, Cloneable {
         return this.heuristicSearchEnabled;
     }
     
+    /**
+     * Returns whether the storage strategy of the history is adjusted to the hit rates
+     * observed at runtime. If few transitions are served from snapshots, the storage of
+     * snapshots is first restricted to non-anonymous transformations and then disabled.
+     * The default is false.
+     * @return
+     */
+    public boolean isHistoryAdaptive() {
+        if (this.historyAdaptive == null) {
+            this.historyAdaptive = false;
+        }
+        return this.historyAdaptive;
+    }
+
+    /**
+     * Returns whether success probabilities are derived from census data. The default is false.
+     * @return
+     */
+    public boolean isCensusDataEnabled() {
+        if (this.censusDataEnabled == null) {
+            this.censusDataEnabled = false;
+        }
+        return this.censusDataEnabled;
+    }
+
+    /**
+     * Returns whether a simplified expression is used for computing entropy-based information loss.
+     * The default is true.
+     * @return
+     */
+    public boolean isEntropyExpressionSimplified() {
+        if (this.entropyExpressionSimplified == null) {
+            this.entropyExpressionSimplified = true;
+        }
+        return this.entropyExpressionSimplified;
+    }
+
+    /**
+     * Returns whether the search algorithm prunes transformations based on lower bounds of information loss.
+     * The default is true.
+     * @return
+     */
+    public boolean isLowerBoundPruningEnabled() {
+        if (this.lowerBoundPruningEnabled == null) {
+            this.lowerBoundPruningEnabled = true;
+        }
+        return this.lowerBoundPruningEnabled;
+    }
+
+    /**
+     * Returns whether the profitability models implement a naive version of the "No-Attack" variant.
+     * The default is false.
+     * @return
+     */
+    public boolean isNaiveNoAttackEnabled() {
+        if (this.naiveNoAttackEnabled == null) {
+            this.naiveNoAttackEnabled = false;
+        }
+        return this.naiveNoAttackEnabled;
+    }
+
+    /**
+     * Returns whether the search algorithm ignores monotonicity of privacy and utility models.
+     * The default is false.
+     * @return
+     */
+    public boolean isNonMonotonicSearchEnforced() {
+        if (this.nonMonotonicSearchEnforced == null) {
+            this.nonMonotonicSearchEnforced = false;
+        }
+        return this.nonMonotonicSearchEnforced;
+    }
+
     /**
      * Is practical monotonicity assumed.
      *
@@ -868,6 +1187,18 @@ public class ARXConfiguration implements Serializable, Cloneable {
         return this.suppressionAlwaysEnabled;
     }
 
+    /**
+     * Returns whether the results of checking transformations are cached across anonymizations
+     * of the same data with the same configuration. The default is false.
+     * @return
+     */
+    public boolean isTransformationCacheEnabled() {
+        if (this.transformationCacheEnabled == null) {
+            this.transformationCacheEnabled = false;
+        }
+        return this.transformationCacheEnabled;
+    }
+
     /**
      * Is optimality guaranteed for sample-based criteria?
      */
@@ -963,6 +1294,17 @@ public class ARXConfiguration implements Serializable, Cloneable {
         return this;
     }
 
+    /**
+     * Sets whether the results of checking transformations are cached across anonymizations
+     * of the same data with the same configuration. Should not be enabled when measuring
+     * execution times. The cache is bypassed if secondary quality models or threshold models
+     * are specified, as their results are not cached. The default is false.
+     * @param enabled
+     */
+    public void setTransformationCacheEnabled(boolean enabled) {
+        this.transformationCacheEnabled = enabled;
+    }
+
     /**
      * Sets whether ARX will use a heuristic search strategy. The default is false.
      * @param heuristicSearchEnabled
@@ -993,6 +1335,27 @@ public class ARXConfiguration implements Serializable, Cloneable {
         this.heuristicSearchTimeLimit = timeInMillis;
     }
 
+    /**
+     * Sets whether the storage strategy of the history is adjusted to the hit rates
+     * observed at runtime. If few transitions are served from snapshots, the storage of
+     * snapshots is first restricted to non-anonymous transformations and then disabled.
+     * The default is false.
+     * @param adaptive
+     */
+    public void setHistoryAdaptive(boolean adaptive) {
+        this.historyAdaptive = adaptive;
+    }
+
+    /**
+     * Sets an upper bound for the memory consumed by snapshots in the history, in bytes.
+     * The number of snapshots will be reduced accordingly.
+     * @param bytes
+     */
+    public void setHistoryMemoryLimit(long bytes) {
+        if (bytes < 0) { throw new IllegalArgumentException("Parameter must be >= 0"); }
+        this.historyMemoryLimit = bytes;
+    }
+
     /**
      * Allows for a certain percentage of outliers and thus
      * triggers tuple suppression.
@@ -1015,6 +1378,49 @@ public class ARXConfiguration implements Serializable, Cloneable {
         this.setQualityModel(model);
     }
     
+    /**
+     * Sets whether success probabilities of the journalist attacker model are derived from census data
+     * instead of the population table. This requires PopulationStatistics to be initialized.
+     * @param enabled
+     */
+    public void setCensusDataEnabled(boolean enabled) {
+        this.censusDataEnabled = enabled;
+    }
+
+    /**
+     * Sets whether a simplified, more efficient expression is used for computing entropy-based information loss
+     * @param simplified
+     */
+    public void setEntropyExpressionSimplified(boolean simplified) {
+        this.entropyExpressionSimplified = simplified;
+    }
+
+    /**
+     * Sets whether the search algorithm prunes transformations based on lower bounds of information loss
+     * @param enabled
+     */
+    public void setLowerBoundPruningEnabled(boolean enabled) {
+        this.lowerBoundPruningEnabled = enabled;
+    }
+
+    /**
+     * Sets whether the profitability models implement a naive version of the "No-Attack" variant, in which
+     * all classes for which an attack would pay off are suppressed
+     * @param enabled
+     */
+    public void setNaiveNoAttackEnabled(boolean enabled) {
+        this.naiveNoAttackEnabled = enabled;
+    }
+
+    /**
+     * Sets whether the search algorithm ignores monotonicity of privacy and utility models and
+     * uses the strategy for non-monotonic models
+     * @param enforced
+     */
+    public void setNonMonotonicSearchEnforced(boolean enforced) {
+        this.nonMonotonicSearchEnforced = enforced;
+    }
+
     /**
      * Set, if practical monotonicity assumed.
      *
@@ -1033,6 +1439,16 @@ public class ARXConfiguration implements Serializable, Cloneable {
         if (model == null) { throw new NullPointerException("Quality model must not be null"); }
         this.metric = model;
     }
+
+    /**
+     * Sets the number of events retained in the search trace. When more events are
+     * recorded, the oldest events will be overwritten. 0 disables the trace.
+     * @param size
+     */
+    public void setSearchTraceSize(int size) {
+        if (size < 0) { throw new IllegalArgumentException("Parameter must be >= 0"); }
+        this.searchTraceSize = size;
+    }
     
     /**
      * Sets whether suppression is applied to the output of anonymous as well as non-anonymous transformations. If
@@ -1164,6 +1580,9 @@ public class ARXConfiguration implements Serializable, Cloneable {
         ARXConfiguration result = this.clone();
         result.aCriteria = null;
         result.criteria = criteria;
+        result.transformationCacheEnabled = false;
+        result.secondaryQualityModels = new ArrayList<Metric<?>>();
+        result.thresholdModels = new ArrayList<PrivacyCriterion>();
         MetricConfiguration utilityConfig = result.getQualityModel().getConfiguration();
         utilityConfig.setGsFactor(gsFactor);
         result.metric = result.getQualityModel().getDescription().createInstance(utilityConfig);
@@ -1287,6 +1706,11 @@ public class ARXConfiguration implements Serializable, Cloneable {
         for (PrivacyCriterion c : criteria) {
             c.initialize(manager, this);
         }
+        
+        // Initialize secondary quality models
+        for (Metric<?> metric : this.getSecondaryQualityModels()) {
+            metric.initialize(manager, manager.getDataDefinition(), manager.getDataGeneralized(), manager.getHierarchies(), this);
+        }
 
         int dataLength = 0;
         if (this.getSubset() != null) {
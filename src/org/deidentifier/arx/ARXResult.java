@@ -18,8 +18,23 @@
 package org.deidentifier.arx;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.deidentifier.arx.ARXAnonymizer.Result;
 import org.deidentifier.arx.ARXLattice.ARXNode;
@@ -27,15 +42,18 @@ import org.deidentifier.arx.criteria.PrivacyCriterion;
 import org.deidentifier.arx.criteria.ProfitabilityJournalist;
 import org.deidentifier.arx.exceptions.RollbackRequiredException;
 import org.deidentifier.arx.framework.check.NodeChecker;
+import org.deidentifier.arx.framework.check.NodeCheckerStatistics;
+import org.deidentifier.arx.framework.check.SearchTrace;
 import org.deidentifier.arx.framework.check.TransformedData;
 import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFunction;
 import org.deidentifier.arx.framework.data.Data;
 import org.deidentifier.arx.framework.data.DataManager;
 import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.framework.data.GeneralizationHierarchy;
 import org.deidentifier.arx.framework.lattice.SolutionSpace;
 import org.deidentifier.arx.framework.lattice.Transformation;
+import org.deidentifier.arx.metric.InformationLoss;
 import org.deidentifier.arx.metric.Metric;
-import org.deidentifier.arx.metric.v2.MetricSDNMPublisherPayout;
 
 /**
  * Encapsulates the results of an execution of the ARX algorithm.
@@ -44,6 +62,171 @@ import org.deidentifier.arx.metric.v2.MetricSDNMPublisherPayout;
  * @author Florian Kohlmayer
  */
 public class ARXResult {
+
+    /**
+     * State of local recoding operations on an output handle, which is reused by subsequent
+     * operations. The outliers are maintained incrementally. They are indexed by the physical
+     * position of rows, which changes when the handle is sorted or rows are swapped. The context
+     * therefore remembers the rows at each position and collects outliers again if the rows at
+     * the positions of outliers have changed.
+     */
+    private static class LocalRecodingContext {
+
+        /** Rows which are outliers */
+        private final BitSet         rows;
+
+        /** Rows which are outliers, as passed to the anonymizer */
+        private RowSet               rowset;
+
+        /** Number of outliers */
+        private int                  count;
+
+        /** The rows of the generalized buffer at each position, when outliers were collected */
+        private int[][]              generalized;
+
+        /** The rows of the microaggregated buffer at each position, when outliers were collected */
+        private int[][]              microaggregated;
+
+        /**
+         * Collects all outliers of the given handle
+         * @param output
+         */
+        private LocalRecodingContext(DataHandleOutput output) {
+            this.rows = new BitSet(output.getNumRows());
+            collect(output);
+        }
+
+        /**
+         * Collects all outliers of the given handle and remembers the order of its rows
+         * @param output
+         */
+        private void collect(DataHandleOutput output) {
+            rows.clear();
+            rowset = RowSet.create(output.getNumRows());
+            for (int row = 0; row < output.getNumRows(); row++) {
+                if (output.isOutlier(row)) {
+                    rows.set(row);
+                    rowset.add(row);
+                }
+            }
+            this.count = rows.cardinality();
+            this.generalized = copy(output.getOutputBufferGeneralized().getArray());
+            this.microaggregated = copy(output.getOutputBufferMicroaggregated().getArray());
+        }
+
+        /**
+         * Copies the given array of rows, but not the rows
+         * @param array
+         * @return
+         */
+        private int[][] copy(int[][] array) {
+            return array == null ? null : array.clone();
+        }
+
+        /**
+         * Marks the given row as no longer being an outlier
+         * @param row
+         */
+        private void remove(int row) {
+            rows.clear(row);
+            rowset.remove(row);
+            count--;
+        }
+
+        /**
+         * Returns whether the outliers of the given handle are still at the positions at which
+         * they have been collected. Rows are compared by identity. Only the positions of outliers
+         * are checked: when rows are reordered, the set of positions of outliers either remains
+         * the same, or one of these positions holds a different row afterwards.
+         * @param output
+         * @return
+         */
+        private boolean isInOrder(DataHandleOutput output) {
+            return isInOrder(generalized, output.getOutputBufferGeneralized().getArray()) &&
+                   isInOrder(microaggregated, output.getOutputBufferMicroaggregated().getArray());
+        }
+
+        /**
+         * Compares the given arrays of rows at the positions of outliers by identity
+         * @param expected
+         * @param actual
+         * @return
+         */
+        private boolean isInOrder(int[][] expected, int[][] actual) {
+            if (expected == null || actual == null) {
+                return expected == actual;
+            }
+            if (expected.length != actual.length) {
+                return false;
+            }
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (expected[row] != actual[row]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * State of a forked output handle. Rows are shared with other forks of the same node, until
+     * they are written for the first time.
+     */
+    private static class Fork {
+
+        /** The shared rows, which are referenced to keep them available to further forks */
+        private final SharedRows source;
+
+        /** The rows owned by the handle. Rows are tracked by identity, as sorting moves them */
+        private final Set<int[]> owned = Collections.newSetFromMap(new IdentityHashMap<int[], Boolean>());
+
+        /**
+         * Creates a new instance
+         * @param source
+         */
+        private Fork(SharedRows source) {
+            this.source = source;
+        }
+    }
+
+    /**
+     * Rows of the output buffers of a node, in the order produced by the transformation. They are
+     * shared by all forked output handles of the node and must never be modified in place.
+     */
+    private static class SharedRows {
+
+        /** Rows of the generalized buffer */
+        private final int[][] generalized;
+
+        /** Rows of the microaggregated buffer */
+        private final int[][] microaggregated;
+
+        /**
+         * Copies the rows of the given buffers
+         * @param generalized
+         * @param microaggregated
+         */
+        private SharedRows(Data generalized, Data microaggregated) {
+            this.generalized = copy(generalized.getArray());
+            this.microaggregated = copy(microaggregated.getArray());
+        }
+
+        /**
+         * Copies the given array of rows, including the rows
+         * @param array
+         * @return
+         */
+        private int[][] copy(int[][] array) {
+            if (array == null) {
+                return null;
+            }
+            int[][] result = new int[array.length][];
+            for (int i = 0; i < array.length; i++) {
+                result[i] = array[i].clone();
+            }
+            return result;
+        }
+    }
     
     /** Payout*/
     private double payout = 0d;
@@ -81,6 +264,21 @@ public class ARXResult {
     /** The registry. */
     private final SolutionSpace    solutionSpace;
 
+    /** The local recoding contexts of output handles */
+    private final Map<DataHandle, LocalRecodingContext> contexts = new WeakHashMap<DataHandle, LocalRecodingContext>();
+
+    /** The state of forked output handles */
+    private final Map<DataHandle, Fork>                 forks    = new WeakHashMap<DataHandle, Fork>();
+
+    /** The rows shared by forked output handles of each node, as long as any of these handles exists */
+    private final Map<ARXNode, WeakReference<SharedRows>> shared = new WeakHashMap<ARXNode, WeakReference<SharedRows>>();
+
+    /** Nodes of the lattice indexed by the identifiers of their transformations, created on demand */
+    private Map<Long, ARXNode>                          nodes    = null;
+
+    /** Metrics which have been initialized for evaluating nodes */
+    private final Set<Metric<?>>                        metrics  = Collections.newSetFromMap(new WeakHashMap<Metric<?>, Boolean>());
+
     /**
      * Internal constructor for deserialization.
      *
@@ -213,6 +411,26 @@ public class ARXResult {
         return optimalNode;
     }
 
+    /**
+     * Returns the global optimum with regard to the given quality model, which must either be the quality
+     * model used for optimization or a secondary quality model of the configuration.
+     * 
+     * @param metric
+     * @return the global optimum, null if there is none
+     * @see ARXConfiguration#addSecondaryQualityModel(Metric)
+     */
+    public ARXNode getGlobalOptimum(Metric<?> metric) {
+        if (metric == config.getQualityModel()) {
+            return optimalNode;
+        }
+        int index = getSecondaryQualityModelIndex(metric);
+        if (index == -1) {
+            throw new IllegalArgumentException("Unknown quality model");
+        }
+        long identifier = checker.getSecondaryOptimum(index);
+        return identifier == -1 ? null : getNode(solutionSpace.getTransformation(identifier).getGeneralization());
+    }
+
     /**
      * Returns a handle to the data obtained by applying the optimal transformation. This method will not copy the buffer, 
      * i.e., only one instance can be obtained for each transformation. All previous handles for output data will be invalidated when a new handle is 
@@ -324,7 +542,7 @@ public class ARXResult {
         // Store
         if (!node.isChecked() || 
                 node.getHighestScore().compareTo(node.getLowestScore()) != 0 || 
-                MetricSDNMPublisherPayout.USE_CENSUS_DATA) {
+                checker.isCensusDataEnabled()) {
             
             node.access().setChecked(true);
             if (transformation.hasProperty(solutionSpace.getPropertyAnonymous())) {
@@ -338,10 +556,12 @@ public class ARXResult {
             lattice.estimateInformationLoss();
         }
         
-        // Clone if needed
+        // Fork if needed. Forks of the same node share rows, which are copied on write.
+        SharedRows source = null;
         if (fork) {
-            information.bufferGeneralized = information.bufferGeneralized.clone(); 
-            information.bufferMicroaggregated = information.bufferMicroaggregated.clone(); 
+            source = getSharedRows(node, information);
+            information.bufferGeneralized = fork(information.bufferGeneralized, source.generalized); 
+            information.bufferMicroaggregated = fork(information.bufferMicroaggregated, source.microaggregated); 
         }
 
         // Create
@@ -358,6 +578,8 @@ public class ARXResult {
         if (!fork) {
             bufferLockedByHandle = result; 
             bufferLockedByNode = node;
+        } else {
+            forks.put(result, new Fork(source));
         }
         
         // Return
@@ -379,6 +601,147 @@ public class ARXResult {
         return getOutput(optimalNode, fork);
     }
 
+    /**
+     * Returns the information loss of the given node under the given quality model. The model is
+     * initialized once for this result, and the node is evaluated by transforming the data with
+     * the node checker of this result, i.e. no further anonymization is performed. Suppression
+     * is performed as for output data.
+     * For the optimum of a secondary quality model, the loss recorded during the search is returned.
+     * @param node
+     * @param metric
+     * @return
+     */
+    public InformationLoss<?> getInformationLoss(ARXNode node, Metric<?> metric) {
+        
+        // Check
+        if (node == null || metric == null) {
+            throw new NullPointerException("Node and metric must not be null");
+        }
+        
+        // Return optimum of secondary quality model
+        int index = getSecondaryQualityModelIndex(metric);
+        if (index != -1 && node == getGlobalOptimum(metric)) {
+            return checker.getSecondaryInformationLoss(index);
+        }
+        
+        // Evaluate
+        return getInformationLoss(node, metric, -1);
+    }
+
+    /**
+     * Returns the information loss of the given node under the given quality model, with suppression
+     * performed as required by the given threshold model. For the optimum of a quality model, the loss
+     * recorded during the search is returned.
+     * @param node
+     * @param threshold
+     * @param metric
+     * @return
+     * @see ARXConfiguration#addThresholdModel(PrivacyCriterion)
+     */
+    public InformationLoss<?> getInformationLoss(ARXNode node, PrivacyCriterion threshold, Metric<?> metric) {
+        
+        // Check
+        if (node == null || threshold == null || metric == null) {
+            throw new NullPointerException("Node, threshold model and metric must not be null");
+        }
+        
+        // Return optimum
+        int index = getThresholdModelIndex(threshold);
+        if (node == getGlobalOptimum(threshold, metric)) {
+            return checker.getThresholdInformationLoss(index, getQualityModelIndex(metric));
+        }
+        
+        // Evaluate
+        return getInformationLoss(node, metric, index);
+    }
+
+    /**
+     * Returns the global optimum with regard to the given threshold model and the given quality model, which
+     * must either be the quality model used for optimization or a secondary quality model of the configuration.
+     * 
+     * @param threshold
+     * @param metric
+     * @return the global optimum, null if the threshold model is not fulfilled by any transformation
+     * @see ARXConfiguration#addThresholdModel(PrivacyCriterion)
+     */
+    public ARXNode getGlobalOptimum(PrivacyCriterion threshold, Metric<?> metric) {
+        long identifier = checker.getThresholdOptimum(getThresholdModelIndex(threshold), getQualityModelIndex(metric));
+        return identifier == -1 ? null : getNode(solutionSpace.getTransformation(identifier).getGeneralization());
+    }
+
+    /**
+     * Returns the node of the lattice with the given generalization levels, null if the lattice
+     * does not contain such a node. Nodes are indexed by the identifiers of their transformations
+     * in the solution space, which are computed from the levels in mixed-radix representation.
+     * @param transformation
+     * @return
+     */
+    public ARXNode getNode(int[] transformation) {
+        
+        // Check
+        if (transformation == null) {
+            throw new NullPointerException("Transformation must not be null");
+        }
+        int[] top = lattice.getTop().getTransformation();
+        if (transformation.length != top.length) {
+            throw new IllegalArgumentException("Transformation must have " + top.length + " levels");
+        }
+        for (int i = 0; i < top.length; i++) {
+            if (transformation[i] < 0 || transformation[i] > top[i]) {
+                return null;
+            }
+        }
+        
+        // Build index
+        if (nodes == null) {
+            nodes = new HashMap<Long, ARXNode>();
+            for (ARXNode[] level : lattice.getLevels()) {
+                for (ARXNode node : level) {
+                    nodes.put(solutionSpace.getTransformation(node.getTransformation()).getIdentifier(), node);
+                }
+            }
+        }
+        
+        // Return
+        return nodes.get(solutionSpace.getTransformation(transformation).getIdentifier());
+    }
+
+    /**
+     * Returns statistics collected while searching the solution space
+     * @return
+     */
+    public NodeCheckerStatistics getStatistics() {
+        return checker.getStatistics();
+    }
+
+    /**
+     * Returns the trace of the search, null if no trace has been recorded
+     * @return
+     * @see ARXConfiguration#setSearchTraceSize(int)
+     */
+    public SearchTrace getSearchTrace() {
+        return checker.getTrace();
+    }
+
+    /**
+     * Re-executes the checks contained in the given trace in the recorded order. Checks are
+     * performed by a new checker without a transformation cache, which compares the privacy
+     * model and the information loss of each transformation to the recorded values.
+     * @param trace
+     * @return The number of checks with a result differing from the recorded result
+     */
+    public int replay(SearchTrace trace) {
+        
+        // Prepare
+        ARXConfiguration config = this.config.clone();
+        config.setTransformationCacheEnabled(false);
+        config.setSearchTraceSize(0);
+        
+        // Replay
+        NodeChecker checker = this.checker.createInstance(manager, config.getInternalConfiguration());
+        return trace.replay(checker, solutionSpace);
+    }
+
     /**
      * Returns the execution time (wall clock).
      *
@@ -416,12 +779,7 @@ public class ARXResult {
         }
         
         // Check, if there are enough outliers
-        int outliers = 0;
-        for (int row = 0; row < output.getNumRows(); row++) {
-            if (output.isOutlier(row)) {
-                outliers++;
-            }
-        }
+        int outliers = getLocalRecodingContext(output).count;
         
         // Check minimal group size
         if (config.getMinimalGroupSize() != Integer.MAX_VALUE && outliers < config.getMinimalGroupSize()) {
@@ -496,25 +854,8 @@ public class ARXResult {
      */
     public int optimize(DataHandle handle, double gsFactor, ARXListener listener) throws RollbackRequiredException {
         
-        // Check if null
-        if (listener == null) {
-            throw new NullPointerException("Listener must not be null");
-        }
-        
-        // Check if null
-        if (handle == null) {
-            throw new NullPointerException("Handle must not be null");
-        }
-
-        // Check bounds
-        if (gsFactor < 0d || gsFactor > 1d) {
-            throw new IllegalArgumentException("Generalization/suppression factor must be in [0, 1]");
-        }
-        
-        // Check if output
-        if (!(handle instanceof DataHandleOutput)) {
-            throw new IllegalArgumentException("Local recoding can only be applied to output data");
-        }
+        // Check arguments
+        checkLocalRecoding(handle, gsFactor, listener);
         
         // Check if optimizable
         if (!isOptimizable(handle)) {
@@ -531,12 +872,8 @@ public class ARXResult {
         
         // We are now ready, to go
         // Collect input and row indices
-        RowSet rowset = RowSet.create(output.getNumRows());
-        for (int row = 0; row < output.getNumRows(); row++) {
-            if (output.isOutlier(row)) {
-                rowset.add(row);
-            }
-        }
+        LocalRecodingContext context = getLocalRecodingContext(output);
+        RowSet rowset = context.rowset;
         
         // Everything that is used from here on, needs to be either
         // (a) state-less, or
@@ -572,55 +909,112 @@ public class ARXResult {
             throw new RuntimeException("Internal error");
         }
         
-        // Break, if no solution has been found
-        if (result.optimum == null) {
+        // Merge the results back into the given handle
+        return merge(output, context, context.rows, result);
+    }
+
+    /**
+     * This method optimizes the given data output with local recoding to improve its utility. The outliers are split
+     * into partitions by the values of a quasi-identifier, which are recoded independently of each other and in parallel.
+     * @param handle
+     * @param gsFactor A factor [0,1] weighting generalization and suppression.
+     *            The default value is 0.5, which means that generalization
+     *            and suppression will be treated equally. A factor of 0
+     *            will favor suppression, and a factor of 1 will favor
+     *            generalization. The values in between can be used for
+     *            balancing both methods.
+     * @param threads The number of partitions and threads
+     * @param listener 
+     * @return The number of optimized records
+     * @throws RollbackRequiredException 
+     */
+    public int optimizePartitioned(DataHandle handle, double gsFactor, int threads, ARXListener listener) throws RollbackRequiredException {
+        
+        // Check arguments
+        checkLocalRecoding(handle, gsFactor, listener);
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be > zero");
+        }
+        
+        // Check if optimizable
+        if (!isOptimizable(handle)) {
             return 0;
-        } else {
-            System.out.println(" - " +
-                               rowset.size() +
-                               " - " +
-                               (Double)result.optimum.getInformationLoss().getMetadata().get(0).getValue());
-            payout += (Double)result.optimum.getInformationLoss().getMetadata().get(0).getValue();
         }
         
-        // Else, merge the results back into the given handle
-        TransformedData data = result.checker.applyTransformation(result.optimum, output.getOutputBufferMicroaggregated().getDictionary());
-        int[][] oldGeneralized = output.getOutputBufferGeneralized().getArray();
-        int[][] oldMicroaggregated = output.getOutputBufferMicroaggregated().getArray();
-        int[][] newGeneralized = data.bufferGeneralized.getArray();
-        int[][] newMicroaggregated = data.bufferMicroaggregated.getArray();
+        // Extract
+        DataHandleOutput output = (DataHandleOutput)handle;
         
-        try {
+        // Check, if input matches
+        if (output.getInputBuffer() == null || !output.getInputBuffer().equals(this.checker.getInputBuffer())) {
+            throw new IllegalArgumentException("This output data is not associated to the correct input data");
+        }
+        
+        // Partition the outliers
+        LocalRecodingContext context = getLocalRecodingContext(output);
+        List<BitSet> partitions = getPartitions(context.rows, threads);
+        
+        // Prepare a fresh copy of everything that is used by each partition. This is done sequentially,
+        // the anonymizations only share state-less objects and the read-only data of the data manager.
+        List<Callable<Result>> tasks = new ArrayList<Callable<Result>>();
+        for (BitSet partition : partitions) {
             
-            int optimized = 0;
-            for (int oldIndex = 0; oldIndex < rowset.length(); oldIndex++) {
-                if (rowset.contains(oldIndex)) {
-                    if (oldGeneralized != null && oldGeneralized.length != 0) {
-                        System.arraycopy(newGeneralized[oldIndex], 0, oldGeneralized[oldIndex], 0, newGeneralized[oldIndex].length);
-                        optimized += (newGeneralized[oldIndex][0] & Data.OUTLIER_MASK) != 0 ? 0 : 1;
-                    }
-                    if (oldMicroaggregated != null && oldMicroaggregated.length != 0) {
-                        System.arraycopy(newMicroaggregated[oldIndex], 0, oldMicroaggregated[oldIndex], 0, newMicroaggregated[oldIndex].length);
-                    }
-                }
+            // Collect row indices
+            RowSet rowset = RowSet.create(output.getNumRows());
+            for (int row = partition.nextSetBit(0); row >= 0; row = partition.nextSetBit(row + 1)) {
+                rowset.add(row);
             }
             
-            // Update data types
-            output.updateDataTypes(result.optimum.getGeneralization());
+            // Project configuration, definition and data manager
+            final ARXConfiguration config = this.config.getInstanceForLocalRecoding(rowset, gsFactor);
+            config.getPrivacyModel(ProfitabilityJournalist.class).setOptimize(true);
+            final DataDefinition definition = this.definition.clone();
+            final DataManager manager = this.manager.getSubsetInstance(rowset);
             
-            // Mark as optimized
-            if (optimized != 0) {
-                output.setOptimized(true);
+            // Create task
+            tasks.add(new Callable<Result>() {
+                @Override
+                public Result call() throws Exception {
+                    ARXAnonymizer anonymizer = new ARXAnonymizer();
+                    anonymizer.setListener(new ARXListener() {
+                        @Override
+                        public void progress(double progress) {
+                            // Empty by design
+                        }
+                    });
+                    return anonymizer.anonymize(manager, definition, config);
+                }
+            });
+        }
+        
+        // Anonymize in parallel
+        List<Result> results = new ArrayList<Result>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (Callable<Result> task : tasks) {
+                futures.add(executor.submit(task));
             }
-            
-            // Return
-            return optimized;
-            
-        // If anything happens in the above block, the operation needs to be rolled back, because
-        // the buffer might be in an inconsistent state
-        } catch (Exception e) {
-            throw new RollbackRequiredException("Handle must be rebuild to guarantee privacy", e);
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+                listener.progress((double) results.size() / (double) futures.size());
+            }
+        } catch (ExecutionException e) {
+            // This should not happen at this point in time, as data has already been read from the source
+            throw new RuntimeException("Internal error", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        // Merge the row-disjoint results back into the given handle. This is done sequentially, because
+        // values of microaggregated attributes are registered in a shared dictionary.
+        int optimized = 0;
+        for (int i = 0; i < partitions.size(); i++) {
+            optimized += merge(output, context, partitions.get(i), results.get(i));
         }
+        return optimized;
     }
 
     /**
@@ -668,6 +1062,30 @@ public class ARXResult {
                                   final int maxIterations,
                                   final double adaptionFactor,
                                   final ARXListener listener) throws RollbackRequiredException {
+        this.optimizeIterative(handle, gsFactor, maxIterations, adaptionFactor, 1, listener);
+    }
+    
+    /**
+     * This method optimizes the given data output with local recoding to improve its utility
+     * @param handle
+     * @param gsFactor A factor [0,1] weighting generalization and suppression.
+     *            The default value is 0.5, which means that generalization
+     *            and suppression will be treated equally. A factor of 0
+     *            will favor suppression, and a factor of 1 will favor
+     *            generalization. The values in between can be used for
+     *            balancing both methods.
+     * @param maxIterations The maximal number of iterations to perform
+     * @param adaptionFactor Is added to the gsFactor when reaching a fixpoint 
+     * @param threads If > 1, each iteration is performed with optimizePartitioned()
+     * @param listener 
+     * @throws RollbackRequiredException 
+     */
+    public void optimizeIterative(final DataHandle handle,
+                                  double gsFactor,
+                                  final int maxIterations,
+                                  final double adaptionFactor,
+                                  final int threads,
+                                  final ARXListener listener) throws RollbackRequiredException {
         
         if (gsFactor < 0d || gsFactor > 1d) {
             throw new IllegalArgumentException("Generalization/suppression factor must be in [0, 1]");
@@ -678,6 +1096,9 @@ public class ARXResult {
         if (maxIterations <= 0) {
             throw new IllegalArgumentException("Max. iterations must be > zero");
         }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be > zero");
+        }
 
         // Outer loop
         int iterations = 0;
@@ -699,7 +1120,7 @@ public class ARXResult {
             };
 
             // Perform individual optimization
-            optimized = optimize(handle, gsFactor, wrapper);
+            optimized = threads > 1 ? optimizePartitioned(handle, gsFactor, threads, wrapper) : optimize(handle, gsFactor, wrapper);
             
             // Try to adapt, if possible
             if (optimized == 0 && adaptionFactor > 0d) {
@@ -715,6 +1136,316 @@ public class ARXResult {
         }
     }
 
+    /**
+     * Creates a copy of the given buffer, which references the given shared rows. Only the array
+     * of rows is copied. Shared rows must never be modified in place.
+     * @param data
+     * @param rows
+     * @return
+     */
+    private Data fork(Data data, int[][] rows) {
+        return new Data(rows == null ? null : rows.clone(), data.getHeader(), data.getMap(), data.getDictionary());
+    }
+
+    /**
+     * Returns the rows shared by forked output handles of the given node. If no handle exists, the
+     * rows are copied from the given buffers, as the checker reuses its buffers for subsequent
+     * transformations. Applying the transformation of a node always yields the same rows.
+     * @param node
+     * @param information
+     * @return
+     */
+    private SharedRows getSharedRows(ARXNode node, TransformedData information) {
+        WeakReference<SharedRows> reference = shared.get(node);
+        SharedRows result = reference == null ? null : reference.get();
+        if (result == null) {
+            result = new SharedRows(information.bufferGeneralized, information.bufferMicroaggregated);
+            shared.put(node, new WeakReference<SharedRows>(result));
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the given node
+     * @param node
+     * @param metric
+     * @param threshold Index of the threshold model, -1 for the privacy models
+     * @return
+     */
+    private InformationLoss<?> getInformationLoss(ARXNode node, Metric<?> metric, int threshold) {
+        
+        // Initialize
+        if (getSecondaryQualityModelIndex(metric) == -1 && metric != config.getQualityModel() && !metrics.contains(metric)) {
+            metric.initialize(manager, definition, manager.getDataGeneralized(), manager.getHierarchies(), config);
+            metrics.add(metric);
+        }
+        
+        // Evaluate
+        return checker.getInformationLoss(solutionSpace.getTransformation(node.getTransformation()), metric, threshold);
+    }
+
+    /**
+     * Returns the index of the given quality model, 0 for the quality model used for optimization and i + 1 for
+     * the i-th secondary quality model
+     * @param metric
+     * @return
+     */
+    private int getQualityModelIndex(Metric<?> metric) {
+        if (metric == config.getQualityModel()) {
+            return 0;
+        }
+        int index = getSecondaryQualityModelIndex(metric);
+        if (index == -1) {
+            throw new IllegalArgumentException("Unknown quality model");
+        }
+        return index + 1;
+    }
+
+    /**
+     * Returns the index of the given threshold model
+     * @param threshold
+     * @return
+     */
+    private int getThresholdModelIndex(PrivacyCriterion threshold) {
+        List<PrivacyCriterion> models = config.getThresholdModels();
+        for (int i = 0; i < models.size(); i++) {
+            if (models.get(i) == threshold) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown threshold model");
+    }
+
+    /**
+     * Returns the index of the given secondary quality model, -1 if it is not contained in the configuration
+     * @param metric
+     * @return
+     */
+    private int getSecondaryQualityModelIndex(Metric<?> metric) {
+        List<Metric<?>> models = config.getSecondaryQualityModels();
+        for (int i = 0; i < models.size(); i++) {
+            if (models.get(i) == metric) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the local recoding context of the given handle. Outliers are collected once and then
+     * maintained incrementally by optimize(). They are collected again, if the rows of the handle
+     * have been reordered in the meantime.
+     * @param output
+     * @return
+     */
+    private LocalRecodingContext getLocalRecodingContext(DataHandleOutput output) {
+        LocalRecodingContext result = contexts.get(output);
+        if (result == null) {
+            result = new LocalRecodingContext(output);
+            contexts.put(output, result);
+        } else if (!result.isInOrder(output)) {
+            result.collect(output);
+        }
+        return result;
+    }
+
+    /**
+     * Checks the arguments of local recoding operations
+     * @param handle
+     * @param gsFactor
+     * @param listener
+     */
+    private void checkLocalRecoding(DataHandle handle, double gsFactor, ARXListener listener) {
+        
+        // Check if null
+        if (listener == null) {
+            throw new NullPointerException("Listener must not be null");
+        }
+        
+        // Check if null
+        if (handle == null) {
+            throw new NullPointerException("Handle must not be null");
+        }
+
+        // Check bounds
+        if (gsFactor < 0d || gsFactor > 1d) {
+            throw new IllegalArgumentException("Generalization/suppression factor must be in [0, 1]");
+        }
+        
+        // Check if output
+        if (!(handle instanceof DataHandleOutput)) {
+            throw new IllegalArgumentException("Local recoding can only be applied to output data");
+        }
+    }
+
+    /**
+     * Splits the given rows into at most the given number of partitions. Rows are grouped by the value of a
+     * quasi-identifier on the highest level of its hierarchy that results in enough groups. Groups are then
+     * assigned to partitions, largest first, each to the currently smallest partition.
+     * @param rows
+     * @param number
+     * @return
+     */
+    private List<BitSet> getPartitions(BitSet rows, int number) {
+        
+        // Prepare
+        int[][] data = manager.getDataGeneralized().getArray();
+        GeneralizationHierarchy[] hierarchies = manager.getHierarchies();
+        int height = 0;
+        for (GeneralizationHierarchy hierarchy : hierarchies) {
+            height = Math.max(height, hierarchy.getArray()[0].length);
+        }
+        
+        // Find attribute and level
+        int dimension = -1;
+        int level = 0;
+        outer: for (int l = height - 1; l >= 0; l--) {
+            for (int d = 0; d < hierarchies.length; d++) {
+                int[][] hierarchy = hierarchies[d].getArray();
+                if (l < hierarchy[0].length) {
+                    Set<Integer> values = new HashSet<Integer>();
+                    for (int row = rows.nextSetBit(0); row >= 0 && values.size() < number; row = rows.nextSetBit(row + 1)) {
+                        values.add(hierarchy[data[row][d]][l]);
+                    }
+                    if (values.size() >= number) {
+                        dimension = d;
+                        level = l;
+                        break outer;
+                    }
+                }
+            }
+        }
+        
+        // Not enough groups
+        if (dimension == -1 || number == 1) {
+            List<BitSet> result = new ArrayList<BitSet>();
+            result.add((BitSet) rows.clone());
+            return result;
+        }
+        
+        // Group
+        int[][] hierarchy = hierarchies[dimension].getArray();
+        Map<Integer, BitSet> groups = new HashMap<Integer, BitSet>();
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            int value = hierarchy[data[row][dimension]][level];
+            BitSet group = groups.get(value);
+            if (group == null) {
+                group = new BitSet();
+                groups.put(value, group);
+            }
+            group.set(row);
+        }
+        
+        // Sort groups by size, descending
+        List<BitSet> sorted = new ArrayList<BitSet>(groups.values());
+        Collections.sort(sorted, new Comparator<BitSet>() {
+            @Override
+            public int compare(BitSet o1, BitSet o2) {
+                return Integer.compare(o2.cardinality(), o1.cardinality());
+            }
+        });
+        
+        // Assign
+        BitSet[] partitions = new BitSet[number];
+        int[] sizes = new int[number];
+        for (BitSet group : sorted) {
+            int smallest = 0;
+            for (int i = 1; i < number; i++) {
+                if (sizes[i] < sizes[smallest]) {
+                    smallest = i;
+                }
+            }
+            if (partitions[smallest] == null) {
+                partitions[smallest] = new BitSet();
+            }
+            partitions[smallest].or(group);
+            sizes[smallest] += group.cardinality();
+        }
+        
+        // Return
+        List<BitSet> result = new ArrayList<BitSet>();
+        for (BitSet partition : partitions) {
+            if (partition != null) {
+                result.add(partition);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merges the result of recoding the given outliers back into the given handle
+     * @param output
+     * @param context
+     * @param rows
+     * @param result
+     * @return The number of optimized records
+     * @throws RollbackRequiredException
+     */
+    private int merge(DataHandleOutput output, LocalRecodingContext context, BitSet rows, Result result) throws RollbackRequiredException {
+        
+        // Break, if no solution has been found
+        if (result.optimum == null) {
+            return 0;
+        } else {
+            payout += (Double)result.optimum.getInformationLoss().getMetadata().get(0).getValue();
+        }
+        
+        // Else, merge the results back into the given handle
+        TransformedData data = result.checker.applyTransformation(result.optimum, output.getOutputBufferMicroaggregated().getDictionary());
+        int[][] oldGeneralized = output.getOutputBufferGeneralized().getArray();
+        int[][] oldMicroaggregated = output.getOutputBufferMicroaggregated().getArray();
+        int[][] newGeneralized = data.bufferGeneralized.getArray();
+        int[][] newMicroaggregated = data.bufferMicroaggregated.getArray();
+        
+        // Rows of forked handles, which are not owned by the handle, are shared and must be replaced
+        Fork fork = forks.get(output);
+        Set<int[]> owned = fork == null ? null : fork.owned;
+        
+        try {
+            
+            int optimized = 0;
+            for (int oldIndex = rows.nextSetBit(0); oldIndex >= 0; oldIndex = rows.nextSetBit(oldIndex + 1)) {
+                if (oldGeneralized != null && oldGeneralized.length != 0) {
+                    if (owned != null && !owned.contains(oldGeneralized[oldIndex])) {
+                        oldGeneralized[oldIndex] = new int[oldGeneralized[oldIndex].length];
+                        owned.add(oldGeneralized[oldIndex]);
+                        context.generalized[oldIndex] = oldGeneralized[oldIndex];
+                    }
+                    System.arraycopy(newGeneralized[oldIndex], 0, oldGeneralized[oldIndex], 0, newGeneralized[oldIndex].length);
+                    if ((newGeneralized[oldIndex][0] & Data.OUTLIER_MASK) == 0) {
+                        context.remove(oldIndex);
+                        optimized++;
+                    }
+                }
+                if (oldMicroaggregated != null && oldMicroaggregated.length != 0) {
+                    if (owned != null && !owned.contains(oldMicroaggregated[oldIndex])) {
+                        oldMicroaggregated[oldIndex] = new int[oldMicroaggregated[oldIndex].length];
+                        owned.add(oldMicroaggregated[oldIndex]);
+                        context.microaggregated[oldIndex] = oldMicroaggregated[oldIndex];
+                    }
+                    System.arraycopy(newMicroaggregated[oldIndex], 0, oldMicroaggregated[oldIndex], 0, newMicroaggregated[oldIndex].length);
+                }
+            }
+            
+            // Update data types
+            output.updateDataTypes(result.optimum.getGeneralization());
+            
+            // Mark as optimized
+            if (optimized != 0) {
+                output.setOptimized(true);
+            }
+            
+            // Return
+            return optimized;
+            
+        // If anything happens in the above block, the operation needs to be rolled back, because
+        // the buffer might be in an inconsistent state
+        } catch (Exception e) {
+            this.contexts.remove(output);
+            throw new RollbackRequiredException("Handle must be rebuild to guarantee privacy", e);
+        }
+    }
+
     /**
      * Returns a map of all microaggregation functions
      * @param definition
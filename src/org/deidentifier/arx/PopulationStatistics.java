@@ -6,35 +6,45 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.deidentifier.arx.framework.data.GeneralizationHierarchy;
+
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.LongDoubleOpenHashMap;
+import com.carrotsearch.hppc.cursors.LongDoubleCursor;
+
 public class PopulationStatistics {
 
+    /** [dimension]->attribute*/
+    private static final String[]               attributes = new String[] { "race", "sex", "age", "zip" };
     /** [dimension][value->id]*/
     private static final Map<String, Integer>[] vocabulary = loadVocabulary();
-    /** (id, id, id, id)->group-size*/
-    private static final Map<List<Integer>, Double> statistics = loadGroupSizes();
+    /** [dimension]->multiplier of ids in keys*/
+    private static final long[]                 radix      = getRadix();
+    /** key(id, id, id, id)->group-size*/
+    private static final LongDoubleOpenHashMap  statistics = loadGroupSizes();
+
+    private static LongDoubleOpenHashMap loadGroupSizes() {
+
+        LongDoubleOpenHashMap result = new LongDoubleOpenHashMap();
 
-    private static Map<List<Integer>, Double> loadGroupSizes() {
-        
-        Map<List<Integer>, Double> result = new HashMap<>();
-        
         Data data = null;
         try {
             // Dimension->ID->Value
             data = Data.create("data/census2010_race5_tn.csv", Charset.defaultCharset(), ';');
             DataHandle handle = data.getHandle();
+            int[] record = new int[vocabulary.length];
             for (int i=0; i<handle.getNumRows(); i++) {
-                List<Integer> record = new ArrayList<Integer>();
-                record.add(Integer.valueOf(handle.getValue(i, 0)));
-                record.add(Integer.valueOf(handle.getValue(i, 1)));
-                record.add(Integer.valueOf(handle.getValue(i, 2)));
-                record.add(Integer.valueOf(handle.getValue(i, 3)));
-                double size = Double.valueOf(handle.getValue(i, 4));
-                result.put(record, size);
+                for (int dimension = 0; dimension < record.length; dimension++) {
+                    record[dimension] = Integer.valueOf(handle.getValue(i, dimension));
+                }
+                double size = Double.valueOf(handle.getValue(i, record.length));
+                result.put(getKey(record), size);
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -42,14 +52,13 @@ public class PopulationStatistics {
         return result;
     }
     private static Map<String, Integer>[] loadVocabulary() {
-        
+
         @SuppressWarnings("unchecked")
-        Map<String, Integer>[] result = new Map[4];
-        result[0] = new HashMap<String, Integer>();
-        result[1] = new HashMap<String, Integer>();
-        result[2] = new HashMap<String, Integer>();
-        result[3] = new HashMap<String, Integer>();
-        
+        Map<String, Integer>[] result = new Map[attributes.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new HashMap<String, Integer>();
+        }
+
         Data data = null;
         try {
             // Dimension->ID->Value
@@ -66,27 +75,154 @@ public class PopulationStatistics {
         }
         return result;
     }
-    
-    public static double getSize(String[] record) {
-        List<Integer> key = new ArrayList<>();
-        key.add(vocabulary[0].get(record[3]));
-        key.add(vocabulary[1].get(record[0]));
-        key.add(vocabulary[2].get(record[2]));
-        key.add(vocabulary[3].get(record[1]));
-
-        if (!statistics.containsKey(key)) {
-            //System.out.println(Arrays.toString(record) + "-> NOT FOUND!");
-            return 0d;
-        } 
-        return statistics.get(key);
+    private static long[] getRadix() {
+        long[] result = new long[vocabulary.length];
+        long multiplier = 1;
+        for (int i = 0; i < result.length; i++) {
+            int max = 0;
+            for (int id : vocabulary[i].values()) {
+                max = Math.max(max, id);
+            }
+            result[i] = multiplier;
+            multiplier *= (max + 1);
+        }
+        return result;
+    }
+    private static long getKey(int[] record) {
+        long key = 0;
+        for (int i = 0; i < record.length; i++) {
+            key += record[i] * radix[i];
+        }
+        return key;
+    }
+
+    /**
+     * Returns the census dimension of the given attribute, -1 if there is none
+     * @param attribute
+     * @return
+     */
+    public static int getDimension(String attribute) {
+        return Arrays.asList(attributes).indexOf(attribute);
+    }
+
+    /**
+     * Returns the census dimension of each of the given attributes
+     * @param header
+     * @return
+     */
+    public static int[] getDimensions(String[] header) {
+        int[] result = new int[header.length];
+        for (int i = 0; i < header.length; i++) {
+            result[i] = getDimension(header[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the id of the given value in the given census dimension, -1 if there is none
+     * @param dimension
+     * @param value
+     * @return
+     */
+    public static int getId(int dimension, String value) {
+        Integer id = vocabulary[dimension].get(value);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the size of the group with the given ids, one for each census dimension
+     * @param record
+     * @return
+     */
+    public static double getSize(int[] record) {
+        return statistics.get(getKey(record));
+    }
+
+    /**
+     * Translates the given hierarchies into census ids. For each attribute and each code of a value
+     * in its hierarchy, the result contains the distinct ids of all leaves generalized to the value.
+     * Leaves which are not contained in the census vocabulary are omitted.
+     * @param header
+     * @param hierarchies
+     * @param dictionary
+     * @return [attribute][code]->ids
+     */
+    public static int[][][] getIds(String[] header, GeneralizationHierarchy[] hierarchies, String[][] dictionary) {
+        int[][][] result = new int[hierarchies.length][][];
+        for (int i = 0; i < hierarchies.length; i++) {
+
+            // Collect distinct ids
+            int dimension = getDimension(header[i]);
+            if (dimension == -1) {
+                throw new IllegalArgumentException("Attribute " + header[i] + " is not contained in the census");
+            }
+            int[][] array = hierarchies[i].getArray();
+            IntOpenHashSet[] ids = new IntOpenHashSet[dictionary[i].length];
+            for (int row = 0; row < array.length; row++) {
+                int id = getId(dimension, dictionary[i][array[row][0]]);
+                if (id == -1) {
+                    continue;
+                }
+                for (int column = 0; column < array[row].length; column++) {
+                    int code = array[row][column];
+                    if (ids[code] == null) {
+                        ids[code] = new IntOpenHashSet();
+                    }
+                    ids[code].add(id);
+                }
+            }
+
+            // Convert
+            result[i] = new int[ids.length][];
+            for (int code = 0; code < ids.length; code++) {
+                result[i][code] = ids[code] == null ? new int[0] : ids[code].toArray();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the size of the population group matching the given generalized values
+     * @param ids Census ids, as returned by getIds()
+     * @param dimensions Census dimension of each attribute
+     * @param key Codes of the generalized values
+     * @return
+     */
+    public static double getSize(int[][][] ids, int[] dimensions, int[] key) {
+
+        // Prepare
+        int[] record = new int[vocabulary.length];
+        int[] index = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i][key[i]].length == 0) {
+                return 0d;
+            }
+            record[dimensions[i]] = ids[i][key[i]][0];
+        }
+
+        // Enumerate all combinations
+        double size = 0d;
+        while (true) {
+            size += getSize(record);
+            int i = 0;
+            while (i < ids.length && ++index[i] == ids[i][key[i]].length) {
+                index[i] = 0;
+                record[dimensions[i]] = ids[i][key[i]][0];
+                i++;
+            }
+            if (i == ids.length) {
+                return size;
+            }
+            record[dimensions[i]] = ids[i][key[i]][index[i]];
+        }
     }
     public static double load() {
-        return vocabulary[0].values().iterator().next() + statistics.values().iterator().next();
+        return vocabulary.length + statistics.size();
     }
-    
+
     public static void main(String[] args) throws IOException {
         @SuppressWarnings("unchecked")
-        Map<Integer, String>[] inverse = new Map[4];
+        Map<Integer, String>[] inverse = new Map[vocabulary.length];
         for (int i = 0; i < vocabulary.length; i++) {
             Map<String, Integer> dictionary = vocabulary[i];
             inverse[i] = new HashMap<Integer, String>();
@@ -94,23 +230,25 @@ public class PopulationStatistics {
                 inverse[i].put(entry.getValue(), entry.getKey());
             }
         }
-        
+
         BufferedWriter writer = new BufferedWriter(new FileWriter(new File("table.csv")));
         writer.write("sex;zip;age;race\n");
-        
+
         int index = 0;
         int total = statistics.size();
-        for (Entry<List<Integer>, Double> entry : statistics.entrySet()) {
+        for (LongDoubleCursor entry : statistics) {
             index++;
             if (index % 100 == 0) {
                 System.out.println(index+"/"+total);
             }
             List<String> record = new ArrayList<String>();
-            for (int i=0; i<entry.getKey().size(); i++) {
-                record.add(inverse[i].get(entry.getKey().get(i)));
+            long key = entry.key;
+            for (int i=vocabulary.length - 1; i >= 0; i--) {
+                record.add(0, inverse[i].get((int)(key / radix[i])));
+                key %= radix[i];
             }
             String line = record.get(1)+";"+ record.get(3)+";"+ record.get(2)+";"+record.get(0)+"\n";
-            int count = (int)Math.ceil(entry.getValue());
+            int count = (int)Math.ceil(entry.value);
             for (int j=0; j<count; j++) {
                 writer.write(line);
             }
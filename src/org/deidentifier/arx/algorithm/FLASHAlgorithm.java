@@ -35,8 +35,6 @@ import org.deidentifier.arx.framework.lattice.Transformation;
  * @author Florian Kohlmayer
  */
 public class FLASHAlgorithm {
-    
-    public static boolean DEFAULT_TO_NONE_NONE = false;
 
     /**
      * Creates a new instance of the FLASH algorithm.
@@ -55,7 +53,7 @@ public class FLASHAlgorithm {
         Monotonicity monotonicityOfUtility = config.getMonotonicityOfUtility();
         Monotonicity monotonicityOfPrivacy = config.getMonotonicityOfPrivacy();
 
-        if (DEFAULT_TO_NONE_NONE) {
+        if (config.isNonMonotonicSearchEnforced()) {
             return createNoneNone(solutionSpace, checker, strategy);
         }
         
@@ -18,6 +18,7 @@
 package org.deidentifier.arx.algorithm;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -25,6 +26,7 @@ import java.util.PriorityQueue;
 
 import org.deidentifier.arx.algorithm.FLASHPhaseConfiguration.PhaseAnonymityProperty;
 import org.deidentifier.arx.framework.check.NodeChecker;
+import org.deidentifier.arx.framework.check.SearchTrace;
 import org.deidentifier.arx.framework.check.groupify.HashGroupify;
 import org.deidentifier.arx.framework.lattice.DependentAction;
 import org.deidentifier.arx.framework.lattice.SolutionSpace;
@@ -69,7 +71,16 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
     private int                        checked         = 0;
 
     /** Flag for activating or de-activating the optimization*/
-    public static boolean              USE_LOWER_BOUND = true;
+    private final boolean              useLowerBound;
+
+    /** Trace of the search, if any */
+    private final SearchTrace          trace;
+
+    /** The current phase, used for tracing */
+    private byte                       phase           = SearchTrace.PHASE_BINARY;
+
+    /** Identifiers of skipped transformations, to count each of them once */
+    private final BitSet               skipped         = new BitSet();
 
     /**
      * Creates a new instance.
@@ -95,6 +106,8 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
         this.config = config;
         this.potentiallyInsufficientUtility = this.config.isPruneInsufficientUtility() ? 
                                               new LinkedList<Integer>() : null;
+        this.trace = checker.getTrace();
+        this.useLowerBound = checker.getConfiguration().isLowerBoundPruningEnabled();
     }
 
     @Override
@@ -109,7 +122,7 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
         }
 
         // Set some triggers
-        checker.getHistory().setStorageStrategy(config.getSnapshotStorageStrategy());
+        checker.setStorageStrategy(config.getSnapshotStorageStrategy());
 
         // Initialize
         PriorityQueue<Integer> queue = new PriorityQueue<Integer>(solutionSpace.getTop().getLevel() + 1, strategy);
@@ -117,13 +130,17 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
         Transformation top = solutionSpace.getTop();
 
         // Check bottom for speed and remember the result to prevent repeated checks
-        NodeChecker.Result result = checker.check(bottom);
+        NodeChecker.Result result = checker.check(bottom).copy();
         bottom.setProperty(solutionSpace.getPropertyForceSnapshot());
         bottom.setData(result);
         progress((double)++checked / (double)solutionSpace.getSize());
+        if (trace != null) {
+            trace.record(bottom, phase, SearchTrace.EVENT_CHECK, result);
+        }
 
         // For each node in the lattice
         for (int level = bottom.getLevel(); level <= top.getLevel(); level++) {
+            phase = config.isBinaryPhaseRequired() ? SearchTrace.PHASE_BINARY : SearchTrace.PHASE_LINEAR;
             for (int id : getSortedUnprocessedNodes(level, outerLoopConfiguration.getTriggerSkip())) {
 
                 // Run the correct phase
@@ -167,6 +184,7 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
         while (!queue.isEmpty()) {
 
             // Remove head and process
+            phase = SearchTrace.PHASE_BINARY;
             transformation = solutionSpace.getTransformation(queue.poll());
             if (!skip(triggerSkip, transformation)) {
 
@@ -193,6 +211,8 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
     private void checkAndTag(Transformation transformation, FLASHPhaseConfiguration configuration) {
 
         // Check or evaluate
+        byte event = SearchTrace.EVENT_TAG;
+        NodeChecker.Result result = null;
         if (configuration.getTriggerEvaluate().appliesTo(transformation)) {
             InformationLossWithBound<?> loss = checker.getMetric().getInformationLoss(transformation, (HashGroupify)null);
             transformation.setInformationLoss(loss.getInformationLoss());
@@ -200,9 +220,18 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
             if (loss.getLowerBound() == null) {
                 transformation.setLowerBound(checker.getMetric().getLowerBound(transformation));
             }
+            checker.getStatistics().trackEvaluation();
+            event = SearchTrace.EVENT_EVALUATE;
         } else if (configuration.getTriggerCheck().appliesTo(transformation)) {
-            transformation.setChecked(checker.check(transformation));
+            result = checker.check(transformation);
+            transformation.setChecked(result);
             progress((double)++checked / (double)solutionSpace.getSize());
+            event = SearchTrace.EVENT_CHECK;
+        }
+
+        // Trace
+        if (trace != null) {
+            trace.record(transformation, phase, event, result);
         }
 
         // Store optimum
@@ -332,6 +361,7 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
 
         // Obtain node action
         DependentAction triggerSkip = config.getLinearPhaseConfiguration().getTriggerSkip();
+        phase = SearchTrace.PHASE_LINEAR;
 
         // Skip this node
         if (!skip(triggerSkip, transformation)) {
@@ -394,6 +424,10 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
             if (optimalInfoLoss.compareTo(node.getLowerBound()) <= 0) {
                 node.setProperty(solutionSpace.getPropertyInsufficientUtility());
                 node.setProperty(solutionSpace.getPropertySuccessorsPruned());
+                checker.getStatistics().trackPrunedByLowerBound();
+                if (trace != null) {
+                    trace.record(node, phase, SearchTrace.EVENT_PRUNE, null);
+                }
                 // Else, we store it as a future pruning candidate
             } else {
                 potentiallyInsufficientUtility.add((int)node.getIdentifier());
@@ -416,6 +450,10 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
                 } else if (optimalInfoLoss.compareTo(currentTransformation.getLowerBound()) <= 0) {
                     currentTransformation.setProperty(solutionSpace.getPropertyInsufficientUtility());
                     currentTransformation.setProperty(solutionSpace.getPropertySuccessorsPruned());
+                    checker.getStatistics().trackPrunedByLowerBound();
+                    if (trace != null) {
+                        trace.record(currentTransformation, phase, SearchTrace.EVENT_PRUNE, null);
+                    }
                     iterator.remove();
                 }
             }
@@ -427,6 +465,21 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
         }
     }
 
+    /**
+     * Marks the given transformation as skipped and returns whether it has not been skipped before.
+     * The same transformation is considered repeatedly when searching for paths and sorting nodes.
+     * @param transformation
+     * @return
+     */
+    private boolean isSkippedForTheFirstTime(Transformation transformation) {
+        int id = (int) transformation.getIdentifier();
+        if (skipped.get(id)) {
+            return false;
+        }
+        skipped.set(id);
+        return true;
+    }
+
     /**
      * Returns whether a node should be skipped.
      *
@@ -438,10 +491,13 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
 
         // If the trigger applies, skip
         if (trigger.appliesTo(transformation)) {
+            if (isSkippedForTheFirstTime(transformation)) {
+                checker.getStatistics().trackSkippedByTrigger();
+            }
             return true;
         }
         
-        if (!USE_LOWER_BOUND) {
+        if (!useLowerBound) {
             return false;
         }
 
@@ -455,6 +511,9 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
 
             // We skip, if we already know that this node has insufficient utility
             if (transformation.hasProperty(solutionSpace.getPropertyInsufficientUtility())) {
+                if (isSkippedForTheFirstTime(transformation)) {
+                    checker.getStatistics().trackSkippedByUtility();
+                }
                 return true;
             }
 
@@ -472,6 +531,12 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
                 if (getGlobalOptimum().getInformationLoss().compareTo(lowerBound) <= 0) {
                     transformation.setProperty(solutionSpace.getPropertyInsufficientUtility());
                     transformation.setProperty(solutionSpace.getPropertySuccessorsPruned());
+                    if (isSkippedForTheFirstTime(transformation)) {
+                        checker.getStatistics().trackSkippedByLowerBound();
+                    }
+                    if (trace != null) {
+                        trace.record(transformation, phase, SearchTrace.EVENT_SKIP, null);
+                    }
                     return true;
                 }
             }
@@ -0,0 +1,452 @@
+/*
+ * Benchmark of ARX's implementation of the game theoretic approach proposed in:
+ * A Game Theoretic Framework for Analyzing Re-Identification Risk.
+ * Zhiyu Wan, Yevgeniy Vorobeychik, Weiyi Xia, Ellen Wright Clayton,
+ * Murat Kantarcioglu, Ranjit Ganta, Raymond Heatherly, Bradley A. Malin
+ * PLOS|ONE. 2015.
+ *
+ * Copyright 2017 - Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Streaming ingestion of CSV files. The file is read in chunks via NIO. Chunks are split into
+ * lines and values in parallel, and values are encoded on the fly using one concurrent dictionary
+ * per column. Codes are written into column-major blocks, one per chunk, which are the only copy
+ * of the data that is retained. After reading, codes are renumbered in the order in which values
+ * first occur in the file, which makes them independent of the scheduling of threads. Values may be
+ * quoted, but must not contain line breaks. The charset must encode line breaks as single bytes,
+ * which is true for UTF-8 and the ISO-8859 family.<br>
+ * <br>
+ * Parsing is simpler than parsing by the ARX library, e.g. values are not trimmed and comments are
+ * not supported. The reader is therefore not used by default.
+ */
+public class BenchmarkCSVReader {
+
+    /** Size of chunks */
+    private static final int CHUNK_SIZE = 1 << 22;
+
+    /** Quote */
+    private static final char QUOTE      = '"';
+
+    /**
+     * Reads the given CSV file
+     * @param file
+     * @param charset
+     * @param separator
+     * @return
+     * @throws IOException
+     */
+    public static BenchmarkCSVReader read(File file, Charset charset, char separator) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        FileInputStream input = new FileInputStream(file);
+        try {
+            return new BenchmarkCSVReader(input.getChannel(), charset, separator, executor, threads * 2);
+        } finally {
+            executor.shutdownNow();
+            input.close();
+        }
+    }
+
+    /**
+     * Splits a line into values
+     * @param line
+     * @param separator
+     * @return
+     * @throws IOException
+     */
+    private static List<String> split(String line, char separator) throws IOException {
+        List<String> result = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == QUOTE && i + 1 < line.length() && line.charAt(i + 1) == QUOTE) {
+                    value.append(QUOTE);
+                    i++;
+                } else if (c == QUOTE) {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == QUOTE) {
+                quoted = true;
+            } else if (c == separator) {
+                result.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IOException("Unterminated quote or line break in quoted value: " + line);
+        }
+        result.add(value.toString());
+        return result;
+    }
+
+    /**
+     * Removes a trailing carriage return
+     * @param line
+     * @return
+     */
+    private static String strip(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /** The header */
+    private final String[]                                     header;
+
+    /** The dictionaries, built during ingestion */
+    private List<ConcurrentHashMap<String, Integer>>           maps;
+
+    /** The dictionaries */
+    private final String[][]                                   dictionaries;
+
+    /** Blocks of codes, column-major */
+    private final List<int[][]>                                blocks;
+
+    /** The number of rows */
+    private final int                                          rows;
+
+    /**
+     * Ingests the given channel
+     * @param channel
+     * @param charset
+     * @param separator
+     * @param executor
+     * @param maxPending Maximal number of chunks in flight
+     * @throws IOException
+     */
+    private BenchmarkCSVReader(FileChannel channel,
+                               final Charset charset,
+                               final char separator,
+                               ExecutorService executor,
+                               int maxPending) throws IOException {
+
+        // Prepare
+        List<Future<int[][]>> futures = new ArrayList<Future<int[][]>>();
+        LinkedList<Future<int[][]>> pending = new LinkedList<Future<int[][]>>();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        String[] header = null;
+        boolean eof = false;
+
+        // Read chunks
+        while (!eof) {
+
+            // Fill buffer
+            while (buffer.hasRemaining() && !eof) {
+                eof = channel.read(buffer) < 0;
+            }
+            buffer.flip();
+
+            // Find last line break
+            int end = buffer.limit();
+            if (!eof) {
+                while (end > 0 && buffer.get(end - 1) != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    // Line longer than buffer
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+                    continue;
+                }
+            }
+            final byte[] chunk = new byte[end];
+            buffer.get(chunk);
+            buffer.compact();
+
+            // Parse header
+            int offset = 0;
+            if (header == null) {
+                if (chunk.length == 0) {
+                    throw new IOException("File is empty");
+                }
+                while (offset < chunk.length && chunk[offset] != '\n') {
+                    offset++;
+                }
+                header = split(strip(new String(chunk, 0, offset, charset)), separator).toArray(new String[0]);
+                this.maps = new ArrayList<ConcurrentHashMap<String, Integer>>();
+                for (int column = 0; column < header.length; column++) {
+                    maps.add(new ConcurrentHashMap<String, Integer>());
+                }
+                offset = Math.min(offset + 1, chunk.length);
+            }
+
+            // Encode in parallel
+            final int start = offset;
+            final int columns = header.length;
+            Future<int[][]> future = executor.submit(new Callable<int[][]>() {
+                @Override
+                public int[][] call() throws Exception {
+                    return encode(new String(chunk, start, chunk.length - start, charset), separator, columns);
+                }
+            });
+            futures.add(future);
+            pending.add(future);
+
+            // Limit the number of chunks in flight
+            while (pending.size() > maxPending) {
+                get(pending.removeFirst());
+            }
+        }
+
+        // Collect blocks
+        this.header = header;
+        this.blocks = new ArrayList<int[][]>();
+        int rows = 0;
+        for (Future<int[][]> future : futures) {
+            int[][] block = get(future);
+            rows += block.length == 0 ? 0 : block[0].length;
+            blocks.add(block);
+        }
+        this.rows = rows;
+
+        // Finalize dictionaries
+        this.dictionaries = new String[header.length][];
+        for (int column = 0; column < header.length; column++) {
+            String[] dictionary = new String[maps.get(column).size()];
+            for (Entry<String, Integer> entry : maps.get(column).entrySet()) {
+                dictionary[entry.getValue()] = entry.getKey();
+            }
+            dictionaries[column] = renumber(column, dictionary);
+        }
+        this.maps = null;
+    }
+
+    /**
+     * Returns the header
+     * @return
+     */
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the number of rows
+     * @return
+     */
+    public int getNumRows() {
+        return rows;
+    }
+
+    /**
+     * Returns an iterator over the header and all rows
+     * @return
+     */
+    public Iterator<String[]> iterator() {
+        return new Iterator<String[]>() {
+
+            /** Current block, -1 is the header */
+            private int block = -1;
+
+            /** Next row in the current block */
+            private int row   = 0;
+
+            @Override
+            public boolean hasNext() {
+                if (block == -1) {
+                    return true;
+                }
+                while (block < blocks.size() && (blocks.get(block).length == 0 || row == blocks.get(block)[0].length)) {
+                    block++;
+                    row = 0;
+                }
+                return block < blocks.size();
+            }
+
+            @Override
+            public String[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (block == -1) {
+                    block++;
+                    return header.clone();
+                }
+                int[][] codes = blocks.get(block);
+                String[] result = new String[header.length];
+                for (int column = 0; column < result.length; column++) {
+                    result[column] = dictionaries[column][codes[column][row]];
+                }
+                row++;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Writes the data into a binary file
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        BenchmarkDataFile.write(file, header, dictionaries, blocks, rows);
+    }
+
+    /**
+     * Encodes the lines contained in the given text
+     * @param text
+     * @param separator
+     * @param columns
+     * @return Codes, column-major
+     * @throws IOException
+     */
+    private int[][] encode(String text, char separator, int columns) throws IOException {
+
+        // Prepare
+        int[][] codes = new int[columns][64];
+        int size = 0;
+        int start = 0;
+
+        // For each line
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            end = end == -1 ? text.length() : end;
+            String line = strip(text.substring(start, end));
+            start = end + 1;
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            // Split
+            List<String> values = split(line, separator);
+            if (values.size() != columns) {
+                throw new IOException("Expected " + columns + " values, but found " + values.size() + ": " + line);
+            }
+
+            // Encode
+            if (size == codes[0].length) {
+                for (int column = 0; column < columns; column++) {
+                    codes[column] = Arrays.copyOf(codes[column], size * 2);
+                }
+            }
+            for (int column = 0; column < columns; column++) {
+                codes[column][size] = getCode(column, values.get(column));
+            }
+            size++;
+        }
+
+        // Trim
+        for (int column = 0; column < columns; column++) {
+            codes[column] = Arrays.copyOf(codes[column], size);
+        }
+        return codes;
+    }
+
+    /**
+     * Returns the result of the given computation
+     * @param future
+     * @return
+     * @throws IOException
+     */
+    private int[][] get(Future<int[][]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Renumbers the codes of the given column in the order of the first occurrence of each value
+     * @param column
+     * @param dictionary
+     * @return The renumbered dictionary
+     */
+    private String[] renumber(int column, String[] dictionary) {
+
+        // Prepare
+        int[] codes = new int[dictionary.length];
+        Arrays.fill(codes, -1);
+        String[] result = new String[dictionary.length];
+        int next = 0;
+
+        // Renumber
+        for (int[][] block : blocks) {
+            if (block.length == 0) {
+                continue;
+            }
+            int[] values = block[column];
+            for (int row = 0; row < values.length; row++) {
+                int code = values[row];
+                if (codes[code] == -1) {
+                    codes[code] = next;
+                    result[next] = dictionary[code];
+                    next++;
+                }
+                values[row] = codes[code];
+            }
+        }
+
+        // Return
+        return result;
+    }
+
+    /**
+     * Returns the code of the given value, registering it in the dictionary if required.
+     * Lookups are lock-free, registrations are synchronized per column to keep codes dense.
+     * @param column
+     * @param value
+     * @return
+     */
+    private int getCode(int column, String value) {
+        ConcurrentHashMap<String, Integer> map = maps.get(column);
+        Integer code = map.get(value);
+        if (code == null) {
+            synchronized (map) {
+                code = map.get(value);
+                if (code == null) {
+                    code = map.size();
+                    map.put(value, code);
+                }
+            }
+        }
+        return code;
+    }
+}
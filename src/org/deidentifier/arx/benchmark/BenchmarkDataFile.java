@@ -0,0 +1,366 @@
+/*
+ * Benchmark of ARX's implementation of the game theoretic approach proposed in:
+ * A Game Theoretic Framework for Analyzing Re-Identification Risk.
+ * Zhiyu Wan, Yevgeniy Vorobeychik, Weiyi Xia, Ellen Wright Clayton,
+ * Murat Kantarcioglu, Ranjit Ganta, Raymond Heatherly, Bradley A. Malin
+ * PLOS|ONE. 2015.
+ *
+ * Copyright 2017 - Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.deidentifier.arx.Data;
+
+/**
+ * A binary, dictionary-encoded representation of a dataset, which is produced once from CSV.
+ * When reading, the file is memory-mapped and rows are decoded from the mapped column codes
+ * into the strings of the dictionaries, i.e. no parsing takes place and all cells with
+ * equal values share a single string instance. Files are produced from CSV files parsed by the
+ * ARX library or, if enabled with the system property arx.benchmark.streaming, by BenchmarkCSVReader.<br>
+ * <br>
+ * The codes are not mapped into the buffers of the DataManager, which is created by the ARX
+ * library from a Data object. Rows are therefore passed to the library as strings, which are
+ * encoded again. Only the parsing of CSV files is avoided.<br>
+ * <br>
+ * Format: [int magic][int rows][int columns]<br>
+ * For each column: [string name][int dictionary size][string value]*[byte code width]<br>
+ * For each column: [code]* with the given width, where strings are encoded as [int length][UTF-8 bytes]
+ */
+public class BenchmarkDataFile {
+
+    /** Magic number of the file format */
+    private static final int     MAGIC   = 0x41524442;
+
+    /** Charset */
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    /**
+     * Returns the binary file for the given CSV file
+     * @param csv
+     * @return
+     */
+    public static File getFile(String csv) {
+        return new File(csv + ".bin");
+    }
+
+    /**
+     * Returns whether an up-to-date binary file is available for the given CSV file
+     * @param csv
+     * @return
+     */
+    public static boolean isAvailable(String csv) {
+        File binary = getFile(csv);
+        return binary.exists() && binary.lastModified() >= new File(csv).lastModified();
+    }
+
+    /**
+     * Converts CSV files into the binary format. Arguments: [file] [separator]
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args == null || args.length != 2 || args[1].length() != 1) {
+            throw new IllegalArgumentException("Usage: [file] [separator]");
+        }
+        if (Boolean.getBoolean("arx.benchmark.streaming")) {
+            BenchmarkCSVReader.read(new File(args[0]), Charset.defaultCharset(), args[1].charAt(0)).write(getFile(args[0]));
+        } else {
+            Data data = Data.create(args[0], Charset.defaultCharset(), args[1].charAt(0));
+            write(data.getHandle().iterator(), getFile(args[0]));
+            data.getHandle().release();
+        }
+    }
+
+    /**
+     * Reads a dataset from the given binary file
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static Data read(File file) throws IOException {
+        return Data.create(new BenchmarkDataFile(file).iterator());
+    }
+
+    /**
+     * Writes the given rows into the given binary file. The first row must contain the header.
+     * Codes are assigned in the order in which values first occur.
+     * @param rows
+     * @param file
+     * @throws IOException
+     */
+    public static void write(Iterator<String[]> rows, File file) throws IOException {
+
+        // Prepare
+        String[] header = rows.next();
+        int columns = header.length;
+        List<Map<String, Integer>> dictionaries = new ArrayList<Map<String, Integer>>();
+        List<List<String>> values = new ArrayList<List<String>>();
+        int[][] codes = new int[columns][16];
+        for (int column = 0; column < columns; column++) {
+            dictionaries.add(new HashMap<String, Integer>());
+            values.add(new ArrayList<String>());
+        }
+
+        // Encode
+        int size = 0;
+        while (rows.hasNext()) {
+            String[] row = rows.next();
+            if (size == codes[0].length) {
+                for (int column = 0; column < columns; column++) {
+                    codes[column] = Arrays.copyOf(codes[column], size * 2);
+                }
+            }
+            for (int column = 0; column < columns; column++) {
+                Integer code = dictionaries.get(column).get(row[column]);
+                if (code == null) {
+                    code = values.get(column).size();
+                    dictionaries.get(column).put(row[column], code);
+                    values.get(column).add(row[column]);
+                }
+                codes[column][size] = code;
+            }
+            size++;
+        }
+
+        // Write
+        String[][] array = new String[columns][];
+        for (int column = 0; column < columns; column++) {
+            array[column] = values.get(column).toArray(new String[values.get(column).size()]);
+            codes[column] = Arrays.copyOf(codes[column], size);
+        }
+        write(file, header, array, Collections.singletonList(codes), size);
+    }
+
+    /**
+     * Writes a dictionary-encoded dataset into the given binary file
+     * @param file
+     * @param header
+     * @param dictionaries
+     * @param blocks Blocks of codes, column-major
+     * @param rows Number of rows
+     * @throws IOException
+     */
+    static void write(File file, String[] header, String[][] dictionaries, List<int[][]> blocks, int rows) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+
+            // Header
+            output.writeInt(MAGIC);
+            output.writeInt(rows);
+            output.writeInt(header.length);
+            for (int column = 0; column < header.length; column++) {
+                writeString(output, header[column]);
+                output.writeInt(dictionaries[column].length);
+                for (String value : dictionaries[column]) {
+                    writeString(output, value);
+                }
+                output.writeByte(getWidth(dictionaries[column].length));
+            }
+
+            // Codes
+            for (int column = 0; column < header.length; column++) {
+                int width = getWidth(dictionaries[column].length);
+                for (int[][] block : blocks) {
+                    for (int code : block[column]) {
+                        switch (width) {
+                        case 1:
+                            output.writeByte(code);
+                            break;
+                        case 2:
+                            output.writeShort(code);
+                            break;
+                        default:
+                            output.writeInt(code);
+                        }
+                    }
+                }
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Returns the number of bytes needed to represent codes for a dictionary of the given size
+     * @param size
+     * @return
+     */
+    private static int getWidth(int size) {
+        return size <= (1 << 8) ? 1 : size <= (1 << 16) ? 2 : 4;
+    }
+
+    /**
+     * Reads a string
+     * @param buffer
+     * @return
+     */
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    /**
+     * Writes a string
+     * @param output
+     * @param value
+     * @throws IOException
+     */
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(CHARSET);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /** The mapped file */
+    private final MappedByteBuffer buffer;
+
+    /** The header */
+    private final String[]         header;
+
+    /** The dictionaries */
+    private final String[][]       dictionaries;
+
+    /** Offsets of the codes of each column */
+    private final int[]            offsets;
+
+    /** Code widths of each column */
+    private final int[]            widths;
+
+    /** The number of rows */
+    private final int              rows;
+
+    /**
+     * Maps the given file
+     * @param file
+     * @throws IOException
+     */
+    private BenchmarkDataFile(File file) throws IOException {
+
+        // Map
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            this.buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+        } finally {
+            input.close();
+        }
+
+        // Read header
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary dataset: " + file);
+        }
+        this.rows = buffer.getInt();
+        int columns = buffer.getInt();
+        this.header = new String[columns];
+        this.dictionaries = new String[columns][];
+        this.widths = new int[columns];
+        for (int column = 0; column < columns; column++) {
+            header[column] = readString(buffer);
+            dictionaries[column] = new String[buffer.getInt()];
+            for (int i = 0; i < dictionaries[column].length; i++) {
+                dictionaries[column][i] = readString(buffer);
+            }
+            widths[column] = buffer.get();
+        }
+
+        // Compute offsets
+        this.offsets = new int[columns];
+        int offset = buffer.position();
+        for (int column = 0; column < columns; column++) {
+            offsets[column] = offset;
+            offset += rows * widths[column];
+        }
+        if (offset > buffer.limit()) {
+            throw new IOException("Truncated binary dataset: " + file);
+        }
+    }
+
+    /**
+     * Returns the code of the given cell
+     * @param row
+     * @param column
+     * @return
+     */
+    private int getCode(int row, int column) {
+        switch (widths[column]) {
+        case 1:
+            return buffer.get(offsets[column] + row) & 0xFF;
+        case 2:
+            return buffer.getShort(offsets[column] + row * 2) & 0xFFFF;
+        default:
+            return buffer.getInt(offsets[column] + row * 4);
+        }
+    }
+
+    /**
+     * Returns an iterator over the header and all rows
+     * @return
+     */
+    private Iterator<String[]> iterator() {
+        return new Iterator<String[]>() {
+
+            /** Next row, -1 is the header */
+            private int row = -1;
+
+            @Override
+            public boolean hasNext() {
+                return row < rows;
+            }
+
+            @Override
+            public String[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String[] result;
+                if (row == -1) {
+                    result = header.clone();
+                } else {
+                    result = new String[header.length];
+                    for (int column = 0; column < result.length; column++) {
+                        result[column] = dictionaries[column][getCode(row, column)];
+                    }
+                }
+                row++;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
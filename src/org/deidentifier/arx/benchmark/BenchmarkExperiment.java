@@ -22,37 +22,34 @@
 package org.deidentifier.arx.benchmark;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.deidentifier.arx.ARXAnonymizer;
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.ARXCostBenefitConfiguration;
-import org.deidentifier.arx.ARXLattice.ARXNode;
 import org.deidentifier.arx.ARXResult;
 import org.deidentifier.arx.AttributeType.Hierarchy;
 import org.deidentifier.arx.Data;
 import org.deidentifier.arx.DataHandle;
 import org.deidentifier.arx.DataSubset;
-import org.deidentifier.arx.algorithm.FLASHAlgorithmImpl;
 import org.deidentifier.arx.criteria.AverageReidentificationRisk;
 import org.deidentifier.arx.criteria.DPresence;
 import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.criteria.PrivacyCriterion;
 import org.deidentifier.arx.criteria.ProfitabilityJournalist;
 import org.deidentifier.arx.criteria.ProfitabilityJournalistNoAttack;
 import org.deidentifier.arx.criteria.ProfitabilityProsecutor;
 import org.deidentifier.arx.criteria.ProfitabilityProsecutorNoAttack;
 import org.deidentifier.arx.exceptions.RollbackRequiredException;
+import org.deidentifier.arx.metric.InformationLoss;
 import org.deidentifier.arx.metric.Metric;
 import org.deidentifier.arx.metric.v2.MetricMDNUNMNormalizedEntropyPotentiallyPrecomputed;
-import org.deidentifier.arx.metric.v2.MetricSDNMEntropyBasedInformationLoss;
 import org.deidentifier.arx.metric.v2.MetricSDNMKLDivergence;
 import org.deidentifier.arx.metric.v2.MetricSDNMPublisherPayout;
 
@@ -68,6 +65,9 @@ import org.deidentifier.arx.metric.v2.MetricSDNMPublisherPayout;
  */
 public class BenchmarkExperiment {
 
+    /** Hierarchies of datasets from which extracts are created */
+    private static final Map<Data, Map<String, Hierarchy>> HIERARCHIES = new WeakHashMap<Data, Map<String, Hierarchy>>();
+
     /**
      * Perform benchmark run
      * @param data
@@ -142,10 +142,7 @@ public class BenchmarkExperiment {
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         ARXResult result = anonymizer.anonymize(data, config);
         
-        result.getOutput(result.getLattice().getTop(), false);
-        MetricSDNMPublisherPayout.USE_CENSUS_DATA = true;
-        result.getOutput(result.getGlobalOptimum(), false);
-        MetricSDNMPublisherPayout.USE_CENSUS_DATA = false;
+        evaluateWithCensusData(result);
         
         payout = (Double)result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
         data.getHandle().release();
@@ -160,6 +157,19 @@ public class BenchmarkExperiment {
      * @throws IOException 
      */
     public static double getCostBenefitPayoutPopulationTable(Data data, DataSubset subset, ARXCostBenefitConfiguration configuration) throws IOException {
+        return getCostBenefitPayoutPopulationTable(data, subset, configuration, true);
+    }
+
+    /**
+     * Perform benchmark run
+     * @param data
+     * @param subset
+     * @param configuration
+     * @param pruning
+     * @return
+     * @throws IOException 
+     */
+    public static double getCostBenefitPayoutPopulationTable(Data data, DataSubset subset, ARXCostBenefitConfiguration configuration, boolean pruning) throws IOException {
 
         double payout = 0d;
         ARXConfiguration config = ARXConfiguration.create();
@@ -167,6 +177,7 @@ public class BenchmarkExperiment {
         config.setQualityModel(Metric.createPublisherPayoutMetric(true));
         config.setMaxOutliers(1d);
         config.addPrivacyModel(new ProfitabilityJournalist(subset));
+        config.setLowerBoundPruningEnabled(pruning);
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         ARXResult result = anonymizer.anonymize(data, config);
         payout = (Double)result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
@@ -183,11 +194,10 @@ public class BenchmarkExperiment {
     public static long getTimeCostBenefitPayoutPopulationTableNoAttack(Data data, DataSubset subset, ARXCostBenefitConfiguration configuration, boolean optimized) throws IOException {
 
         long time = System.currentTimeMillis();
-        if (!optimized) {
-            ProfitabilityJournalist.NAIVE_NO_ATTACK = true;
-        }
         ARXConfiguration config = ARXConfiguration.create();
         config.setCostBenefitConfiguration(configuration);
+        config.setNaiveNoAttackEnabled(!optimized);
+        config.setNonMonotonicSearchEnforced(true);
         if (!optimized) {
             config.setQualityModel(Metric.createPublisherPayoutMetric(true));
         } else {
@@ -202,9 +212,6 @@ public class BenchmarkExperiment {
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         anonymizer.anonymize(data, config).getTime();
         data.getHandle().release();
-        if (!optimized) {
-            ProfitabilityJournalist.NAIVE_NO_ATTACK = false;
-        }
         return System.currentTimeMillis() - time;
     }
 
@@ -218,11 +225,10 @@ public class BenchmarkExperiment {
     public static long getTimeCostBenefitPayoutNoAttack(Data data, ARXCostBenefitConfiguration configuration, boolean optimized) throws IOException {
 
         long time = System.currentTimeMillis();
-        if (!optimized) {
-            ProfitabilityProsecutor.NAIVE_NO_ATTACK = true;
-        }
         ARXConfiguration config = ARXConfiguration.create();
         config.setCostBenefitConfiguration(configuration);
+        config.setNaiveNoAttackEnabled(!optimized);
+        config.setNonMonotonicSearchEnforced(true);
         if (!optimized) {
             config.setQualityModel(Metric.createPublisherPayoutMetric(false));
         } else {
@@ -237,9 +243,6 @@ public class BenchmarkExperiment {
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         anonymizer.anonymize(data, config).getTime();
         data.getHandle().release();
-        if (!optimized) {
-            ProfitabilityProsecutor.NAIVE_NO_ATTACK = false;
-        }
         return System.currentTimeMillis() - time;
     }
     /**
@@ -257,6 +260,7 @@ public class BenchmarkExperiment {
         config.setQualityModel(Metric.createPublisherPayoutMetric(false));
         config.setMaxOutliers(1d);
         config.addPrivacyModel(new ProfitabilityProsecutor());
+        config.setTransformationCacheEnabled(true);
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         ARXResult result = anonymizer.anonymize(data, config);
         payout = (Double)result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
@@ -280,23 +284,13 @@ public class BenchmarkExperiment {
         config.setQualityModel(metric);
         config.setMaxOutliers(1d);
         config.addPrivacyModel(new ProfitabilityProsecutor());
+        config.setTransformationCacheEnabled(true);
         ARXAnonymizer anonymizer = new ARXAnonymizer();
-        Map<String, Integer> transformation = getTransformation(anonymizer.anonymize(data, config).getGlobalOptimum());
-        data.getHandle().release();
+        ARXResult result = anonymizer.anonymize(data, config);
         
         // Return associated payout
-        config = ARXConfiguration.create();
-        config.setCostBenefitConfiguration(configuration);
-        config.setQualityModel(Metric.createPublisherPayoutMetric(false));
-        config.setMaxOutliers(1d);
-        config.addPrivacyModel(new ProfitabilityProsecutor());
-        for (Entry<String, Integer> level : transformation.entrySet()) {
-            data.getDefinition().setMinimumGeneralization(level.getKey(), level.getValue());
-            data.getDefinition().setMaximumGeneralization(level.getKey(), level.getValue());
-        }
-        anonymizer = new ARXAnonymizer();
-        ARXResult result = anonymizer.anonymize(data, config);
-        double payout = (Double)result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
+        InformationLoss<?> loss = result.getInformationLoss(result.getGlobalOptimum(), Metric.createPublisherPayoutMetric(false));
+        double payout = (Double)loss.getMetadata().get(0).getValue();
         data.getHandle().release();
         return payout / (data.getHandle().getNumRows() * configuration.getPublisherBenefit());
     }
@@ -317,6 +311,7 @@ public class BenchmarkExperiment {
         config.setQualityModel(metric);
         config.setMaxOutliers(1d);
         config.addPrivacyModel(new ProfitabilityProsecutor());
+        config.setTransformationCacheEnabled(true);
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         ARXResult result = anonymizer.anonymize(data, config);
         quality = Double.valueOf(result.getGlobalOptimum().getHighestScore().toString());
@@ -348,36 +343,74 @@ public class BenchmarkExperiment {
         config.setMaxOutliers(1d);
         config.addPrivacyModel(new ProfitabilityProsecutor());
         ARXAnonymizer anonymizer = new ARXAnonymizer();
-        int[] transformation = anonymizer.anonymize(data, config).getGlobalOptimum().getTransformation();
-        data.getHandle().release();
-        
-        
-        
-        // Return associated payout
-        config = ARXConfiguration.create();
-        config.setCostBenefitConfiguration(configuration);
-        config.setQualityModel(metric);
-        config.setMaxOutliers(1d);
-        config.addPrivacyModel(new ProfitabilityProsecutor());
-        anonymizer = new ARXAnonymizer();
         ARXResult result = anonymizer.anonymize(data, config);
-        for (ARXNode[] level : result.getLattice().getLevels()) {
-            for (ARXNode node : level) {
-                if (Arrays.equals(node.getTransformation(), transformation)) {
-                    result.getOutput(node);
-                    double quality = Double.valueOf(result.getGlobalOptimum().getHighestScore().toString());
-                    if (metric instanceof MetricMDNUNMNormalizedEntropyPotentiallyPrecomputed) {
-                        quality /= (double)data.getDefinition().getQuasiIdentifyingAttributes().size();
-                    } else if (metric instanceof MetricSDNMKLDivergence) {
-                        quality /= Double.valueOf(result.getLattice().getTop().getHighestScore().toString());
-                    }
-                    return 1d-quality;
-                }
-            }
+        
+        // Return associated quality
+        double quality = Double.valueOf(result.getInformationLoss(result.getGlobalOptimum(), metric).toString());
+        if (metric instanceof MetricMDNUNMNormalizedEntropyPotentiallyPrecomputed) {
+            quality /= (double)data.getDefinition().getQuasiIdentifyingAttributes().size();
+        } else if (metric instanceof MetricSDNMKLDivergence) {
+            quality /= Double.valueOf(result.getInformationLoss(result.getLattice().getTop(), metric).toString());
         }
         data.getHandle().release();
-        throw new IllegalStateException("Unknown transfomation");
+        return 1d-quality;
+    }
+    /**
+     * Returns the payout of the optimum of the given quality model
+     * @param data
+     * @param result
+     * @param configuration
+     * @param metric
+     * @return
+     */
+    public static double getPayout(Data data, ARXResult result, ARXCostBenefitConfiguration configuration, Metric<?> metric) {
+        InformationLoss<?> loss = result.getInformationLoss(result.getGlobalOptimum(metric), Metric.createPublisherPayoutMetric(false));
+        double payout = (Double)loss.getMetadata().get(0).getValue();
+        return payout / (data.getHandle().getNumRows() * configuration.getPublisherBenefit());
     }
+
+    /**
+     * Returns the quality of the optimum of the given quality model
+     * @param data
+     * @param result
+     * @param metric
+     * @return
+     */
+    public static double getQuality(Data data, ARXResult result, Metric<?> metric) {
+        double quality = Double.valueOf(result.getInformationLoss(result.getGlobalOptimum(metric), metric).toString());
+        if (metric instanceof MetricMDNUNMNormalizedEntropyPotentiallyPrecomputed) {
+            quality /= (double)data.getDefinition().getQuasiIdentifyingAttributes().size();
+        } else if (metric instanceof MetricSDNMKLDivergence) {
+            quality /= Double.valueOf(result.getInformationLoss(result.getLattice().getTop(), metric).toString());
+        }
+        return 1d-quality;
+    }
+
+    /**
+     * Performs a single anonymization, in which all given quality models are evaluated. The first
+     * model is used for optimization, all others are added as secondary quality models.
+     * @param data
+     * @param configuration
+     * @param criterion
+     * @param metrics
+     * @return
+     * @throws IOException 
+     */
+    public static ARXResult getResult(Data data, ARXCostBenefitConfiguration configuration, PrivacyCriterion criterion, Metric<?>... metrics) throws IOException {
+        ARXConfiguration config = ARXConfiguration.create();
+        if (configuration != null) {
+            config.setCostBenefitConfiguration(configuration);
+        }
+        config.setQualityModel(metrics[0]);
+        for (int i = 1; i < metrics.length; i++) {
+            config.addSecondaryQualityModel(metrics[i]);
+        }
+        config.setMaxOutliers(1d);
+        config.addPrivacyModel(criterion);
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        return anonymizer.anonymize(data, config);
+    }
+
     /**
      * Perform benchmark run
      * @param data
@@ -401,14 +434,14 @@ public class BenchmarkExperiment {
      */
     public static double getExecutionTime(Data data, ARXCostBenefitConfiguration configuration, boolean pruning, boolean expressionSimplification) throws IOException {
 
-        MetricSDNMEntropyBasedInformationLoss.OPTIMIZED = expressionSimplification;
         double result = 0d;
         ARXConfiguration config = ARXConfiguration.create();
         config.setCostBenefitConfiguration(configuration);
         config.setQualityModel(Metric.createPublisherPayoutMetric(false));
         config.setMaxOutliers(1d);
         config.addPrivacyModel(new ProfitabilityProsecutor());
-        FLASHAlgorithmImpl.USE_LOWER_BOUND = pruning;
+        config.setEntropyExpressionSimplified(expressionSimplification);
+        config.setLowerBoundPruningEnabled(pruning);
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         long time = System.nanoTime();
         anonymizer.anonymize(data, config);
@@ -419,28 +452,47 @@ public class BenchmarkExperiment {
     }
     
     /**
-     * Extracts a data subset
+     * Extracts a data subset. Records are streamed from the handle of the given dataset, so that
+     * no copy is created and all values are shared with its dictionary. Hierarchies are shared
+     * by all extracts of a dataset. The dataset can be used to create any number of extracts.
      * @param data
      * @param qis
      * @param records
      * @param attributes
      * @return
      */
-    public static Data getExtract(Data data, String[] qis, int records, int attributes) {
+    public static Data getExtract(Data data, String[] qis, final int records, int attributes) {
 
         // Extract records
-        List<String[]> list = new ArrayList<>();
-        Iterator<String[]> iter = data.getHandle().iterator();
-        while (iter.hasNext()) {
-            list.add(iter.next());
-            if (list.size() == records + 1) {
-                break;
+        final Iterator<String[]> iter = data.getHandle().iterator();
+        Data result = Data.create(new Iterator<String[]>() {
+            
+            /** Header and records left */
+            private int remaining = records + 1;
+            
+            @Override
+            public boolean hasNext() {
+                return remaining > 0 && iter.hasNext();
             }
-        }
+
+            @Override
+            public String[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                return iter.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
         
-        Data result = Data.create(list.iterator());
+        // Project onto quasi-identifiers
         for (int i=0; i < attributes; i++) {
-            result.getDefinition().setAttributeType(qis[i], Hierarchy.create(data.getDefinition().getHierarchy(qis[i])));
+            result.getDefinition().setAttributeType(qis[i], getHierarchy(data, qis[i]));
         }
         return result;
     }
@@ -589,10 +641,7 @@ public class BenchmarkExperiment {
             ARXAnonymizer anonymizer = new ARXAnonymizer();
             ARXResult result = anonymizer.anonymize(data, config);
             
-            result.getOutput(result.getLattice().getTop(), false);
-            MetricSDNMPublisherPayout.USE_CENSUS_DATA = true;
-            result.getOutput(result.getGlobalOptimum(), false);
-            MetricSDNMPublisherPayout.USE_CENSUS_DATA = false;
+            evaluateWithCensusData(result);
             
             payout += (Double)result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
             data.getHandle().release();
@@ -609,9 +658,6 @@ public class BenchmarkExperiment {
      */
     public static double getWanPayoutNoAttackCENSUS(Data data, ARXCostBenefitConfiguration configuration) throws IOException {
 
-        ProfitabilityJournalist.USE_CENSUS_DATA = true;
-        MetricSDNMPublisherPayout.USE_CENSUS_DATA = true;
-        ProfitabilityJournalist.NAIVE_NO_ATTACK = true;
         double payout = 0d;
         int max = data.getHandle().getNumRows();
         //max = 100;
@@ -623,14 +669,13 @@ public class BenchmarkExperiment {
             config.setQualityModel(Metric.createPublisherPayoutMetric(true));
             config.setMaxOutliers(0d);
             config.addPrivacyModel(new ProfitabilityJournalist(DataSubset.create(data, getSet(record))));
+            config.setCensusDataEnabled(true);
+            config.setNaiveNoAttackEnabled(true);
             ARXAnonymizer anonymizer = new ARXAnonymizer();
             ARXResult result = anonymizer.anonymize(data, config);
             payout += (Double)result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
             data.getHandle().release();
         }
-        MetricSDNMPublisherPayout.USE_CENSUS_DATA = false;
-        ProfitabilityJournalist.USE_CENSUS_DATA = false;
-        ProfitabilityJournalist.NAIVE_NO_ATTACK = false;
         return payout / (data.getHandle().getNumRows() * configuration.getPublisherBenefit());
     }
     
@@ -644,9 +689,6 @@ public class BenchmarkExperiment {
      */
     public static double getWanPayoutCENSUS(Data data, ARXCostBenefitConfiguration configuration, boolean optimal) throws IOException {
 
-        ProfitabilityJournalist.USE_CENSUS_DATA = true;
-        MetricSDNMPublisherPayout.USE_CENSUS_DATA = true;
-
         double payout = 0d;
         int max = data.getHandle().getNumRows();
         //max = 100;
@@ -658,14 +700,12 @@ public class BenchmarkExperiment {
             config.setQualityModel(Metric.createPublisherPayoutMetric(true));
             config.setMaxOutliers(0d);
             config.addPrivacyModel(new ProfitabilityJournalist(DataSubset.create(data, getSet(record))));
+            config.setCensusDataEnabled(true);
             ARXAnonymizer anonymizer = new ARXAnonymizer();
             ARXResult result = anonymizer.anonymize(data, config);
             payout += (Double)result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
             data.getHandle().release();
         }
-        MetricSDNMPublisherPayout.USE_CENSUS_DATA = false;
-        ProfitabilityJournalist.USE_CENSUS_DATA = false;
-
         return payout / (data.getHandle().getNumRows() * configuration.getPublisherBenefit());
     }
     
@@ -717,10 +757,7 @@ public class BenchmarkExperiment {
             ARXAnonymizer anonymizer = new ARXAnonymizer();
             ARXResult result = anonymizer.anonymize(data, config);
             
-            result.getOutput(result.getLattice().getTop(), false);
-            MetricSDNMPublisherPayout.USE_CENSUS_DATA = true;
-            result.getOutput(result.getGlobalOptimum(), false);
-            MetricSDNMPublisherPayout.USE_CENSUS_DATA = false;
+            evaluateWithCensusData(result);
             
             payout += (Double)result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
             data.getHandle().release();
@@ -738,7 +775,6 @@ public class BenchmarkExperiment {
      */
     public static double getRecordLevelPayoutNoAttackNaive(Data data, ARXCostBenefitConfiguration configuration) throws IOException {
 
-        ProfitabilityJournalist.NAIVE_NO_ATTACK = true;
         double payout = 0d;
         int max = data.getHandle().getNumRows();
         for (int record=0; record<max; record++) {
@@ -747,12 +783,12 @@ public class BenchmarkExperiment {
             config.setQualityModel(Metric.createPublisherPayoutMetric(true));
             config.setMaxOutliers(0d);
             config.addPrivacyModel(new ProfitabilityJournalist(DataSubset.create(data, getSet(record))));
+            config.setNaiveNoAttackEnabled(true);
             ARXAnonymizer anonymizer = new ARXAnonymizer();
             ARXResult result = anonymizer.anonymize(data, config);
             payout += (Double)result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
             data.getHandle().release();
         }
-        ProfitabilityJournalist.NAIVE_NO_ATTACK = false;
         return payout / (data.getHandle().getNumRows() * configuration.getPublisherBenefit());
     }
 
@@ -821,10 +857,7 @@ public class BenchmarkExperiment {
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         ARXResult result = anonymizer.anonymize(data, config);
         
-        result.getOutput(result.getLattice().getTop(), false);
-        MetricSDNMPublisherPayout.USE_CENSUS_DATA = true;
-        result.getOutput(result.getGlobalOptimum(), false);
-        MetricSDNMPublisherPayout.USE_CENSUS_DATA = false;
+        evaluateWithCensusData(result);
         
         payout += (Double) result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
         data.getHandle().release();
@@ -840,18 +873,17 @@ public class BenchmarkExperiment {
      * @throws IOException 
      */
     public static double getFullDomainPayoutNoAttackNaivePopulationTable(Data data, DataSubset subset, ARXCostBenefitConfiguration configuration) throws IOException {
-        ProfitabilityJournalist.NAIVE_NO_ATTACK = true;
         double payout = 0d;
         ARXConfiguration config = ARXConfiguration.create();
         config.setCostBenefitConfiguration(configuration);
         config.setQualityModel(Metric.createPublisherPayoutMetric(true));
         config.setMaxOutliers(1d);
         config.addPrivacyModel(new ProfitabilityJournalist(subset));
+        config.setNaiveNoAttackEnabled(true);
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         ARXResult result = anonymizer.anonymize(data, config);
         payout += (Double) result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
         data.getHandle().release();
-        ProfitabilityJournalist.NAIVE_NO_ATTACK = false;
         return payout / (data.getHandle().getNumRows() * configuration.getPublisherBenefit());
     }
 
@@ -864,18 +896,17 @@ public class BenchmarkExperiment {
      * @throws IOException 
      */
     public static double getFullDomainPayoutNoAttackNaive(Data data, ARXCostBenefitConfiguration configuration) throws IOException {
-        ProfitabilityJournalist.NAIVE_NO_ATTACK = true;
         double payout = 0d;
         ARXConfiguration config = ARXConfiguration.create();
         config.setCostBenefitConfiguration(configuration);
         config.setQualityModel(Metric.createPublisherPayoutMetric(true));
         config.setMaxOutliers(1d);
         config.addPrivacyModel(new ProfitabilityJournalist(DataSubset.create(data,data)));
+        config.setNaiveNoAttackEnabled(true);
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         ARXResult result = anonymizer.anonymize(data, config);
         payout += (Double) result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
         data.getHandle().release();
-        ProfitabilityJournalist.NAIVE_NO_ATTACK = false;
         return payout / (data.getHandle().getNumRows() * configuration.getPublisherBenefit());
     }
 
@@ -891,18 +922,17 @@ public class BenchmarkExperiment {
 
         int max = data.getHandle().getNumRows();
         if (!optimized) {
-            ProfitabilityJournalist.NAIVE_NO_ATTACK = true;
             for (int record=0; record<max; record++) {
                 ARXConfiguration config = ARXConfiguration.create();
                 config.setCostBenefitConfiguration(configuration);
                 config.setQualityModel(Metric.createPublisherPayoutMetric(true));
                 config.setMaxOutliers(1d);
                 config.addPrivacyModel(new ProfitabilityJournalist(DataSubset.create(data, getSet(record))));
+                config.setNaiveNoAttackEnabled(true);
                 ARXAnonymizer anonymizer = new ARXAnonymizer();
                 anonymizer.anonymize(data, config);
                 data.getHandle().release();
             }
-            ProfitabilityJournalist.NAIVE_NO_ATTACK = false;
         } else {
             for (int record=0; record<max; record++) {
                 ARXConfiguration config = ARXConfiguration.create();
@@ -974,7 +1004,6 @@ public class BenchmarkExperiment {
      */
     public static double getSafeHarborPayoutCENSUS(Data data, ARXCostBenefitConfiguration configuration) throws IOException {
 
-        MetricSDNMPublisherPayout.USE_CENSUS_DATA = true;
         double payout = 0d;
         ARXConfiguration config = ARXConfiguration.create();
         config.setCostBenefitConfiguration(configuration);
@@ -982,14 +1011,30 @@ public class BenchmarkExperiment {
         config.setMaxOutliers(1d);
         // Ugly hack
         config.addPrivacyModel(new DPresence(0d, 1d, DataSubset.create(data, data)));
+        config.setCensusDataEnabled(true);
         ARXAnonymizer anonymizer = new ARXAnonymizer();
         ARXResult result = anonymizer.anonymize(data, config);
         payout = (Double)result.getGlobalOptimum().getHighestScore().getMetadata().get(0).getValue();
         data.getHandle().release();
-        MetricSDNMPublisherPayout.USE_CENSUS_DATA = false;
         return payout / (data.getHandle().getNumRows() * configuration.getPublisherBenefit());
     }
 
+    /**
+     * Evaluates the global optimum with census data. The top transformation is evaluated
+     * beforehand, without census data, to initialize the output.
+     * @param result
+     */
+    private static void evaluateWithCensusData(ARXResult result) {
+        result.getOutput(result.getLattice().getTop(), false);
+        MetricSDNMPublisherPayout metric = (MetricSDNMPublisherPayout) result.getConfiguration().getQualityModel();
+        metric.setCensusDataEnabled(true);
+        try {
+            result.getOutput(result.getGlobalOptimum(), false);
+        } finally {
+            metric.setCensusDataEnabled(false);
+        }
+    }
+
     /**
      * Returns a set including all records
      * @param data
@@ -1004,26 +1049,35 @@ public class BenchmarkExperiment {
     }
 
     /**
-     * Creates a set with one record
-     * @param record
+     * Returns the hierarchy for the given attribute of the given dataset, which is created once
+     * @param data
+     * @param attribute
      * @return
      */
-    private static Set<Integer> getSet(int record) {
-        Set<Integer> result = new HashSet<Integer>();
-        result.add(record);
-        return result;
+    private static Hierarchy getHierarchy(Data data, String attribute) {
+        synchronized (HIERARCHIES) {
+            Map<String, Hierarchy> hierarchies = HIERARCHIES.get(data);
+            if (hierarchies == null) {
+                hierarchies = new HashMap<String, Hierarchy>();
+                HIERARCHIES.put(data, hierarchies);
+            }
+            Hierarchy hierarchy = hierarchies.get(attribute);
+            if (hierarchy == null) {
+                hierarchy = Hierarchy.create(data.getDefinition().getHierarchy(attribute));
+                hierarchies.put(attribute, hierarchy);
+            }
+            return hierarchy;
+        }
     }
 
     /**
-     * Creates a map
-     * @param transformation
+     * Creates a set with one record
+     * @param record
      * @return
      */
-    private static Map<String, Integer> getTransformation(ARXNode transformation) {
-        Map<String, Integer> result = new HashMap<>();
-        for (String qi : transformation.getQuasiIdentifyingAttributes()) {
-            result.put(qi, transformation.getGeneralization(qi));
-        }
+    private static Set<Integer> getSet(int record) {
+        Set<Integer> result = new HashSet<Integer>();
+        result.add(record);
         return result;
     }
 }
@@ -23,10 +23,14 @@ package org.deidentifier.arx.benchmark;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.deidentifier.arx.ARXCostBenefitConfiguration;
 import org.deidentifier.arx.Data;
 import org.deidentifier.arx.benchmark.BenchmarkSetup.BenchmarkDataset;
+import org.deidentifier.arx.framework.check.TransformationCache;
+import org.deidentifier.arx.framework.data.DomainShareCache;
 import org.deidentifier.arx.metric.Metric;
 
 import cern.colt.Arrays;
@@ -65,68 +69,127 @@ public abstract class BenchmarkExperiment3 extends BenchmarkExperiment {
     /** MEASUREMENT PARAMETER */
     private static final int       PAYOUT_OPTIMAL       = BENCHMARK.addMeasure("Payout (optimal)");
     
+    /** Measures in the order of the values returned by runTask */
+    private static final int[]     MEASURES             = new int[] { QUALITY_COST_BENEFIT,
+                                                                      QUALITY_50_AVG_RISK,
+                                                                      QUALITY_33_AVG_RISK,
+                                                                      QUALITY_20_AVG_RISK,
+                                                                      QUALITY_50_IND_RISK,
+                                                                      QUALITY_33_IND_RISK,
+                                                                      QUALITY_20_IND_RISK,
+                                                                      PAYOUT_COST_BENEFIT,
+                                                                      PAYOUT_OPTIMAL };
+    
     /**
-     * Main
+     * Main. The optional second argument specifies a number of worker processes.
      * @param args
      * @throws IOException
      */
     public static void main(String[] args) throws IOException {
 
         BenchmarkDataset dataset = BenchmarkSetup.getBenchmarkDataset(args[0]);
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : 0;
 
         // Init
-        BENCHMARK.addAnalyzer(QUALITY_COST_BENEFIT, new ValueBuffer());
-        BENCHMARK.addAnalyzer(QUALITY_50_AVG_RISK, new ValueBuffer());
-        BENCHMARK.addAnalyzer(QUALITY_33_AVG_RISK, new ValueBuffer());
-        BENCHMARK.addAnalyzer(QUALITY_20_AVG_RISK, new ValueBuffer());
-        BENCHMARK.addAnalyzer(QUALITY_50_IND_RISK, new ValueBuffer());
-        BENCHMARK.addAnalyzer(QUALITY_33_IND_RISK, new ValueBuffer());
-        BENCHMARK.addAnalyzer(QUALITY_20_IND_RISK, new ValueBuffer());
-        BENCHMARK.addAnalyzer(PAYOUT_COST_BENEFIT, new ValueBuffer());
-        BENCHMARK.addAnalyzer(PAYOUT_OPTIMAL, new ValueBuffer());
+        for (int measure : MEASURES) {
+            BENCHMARK.addAnalyzer(measure, new ValueBuffer());
+        }
 
-        // Perform
-        ARXCostBenefitConfiguration config = ARXCostBenefitConfiguration.create()
-                                                                        .setAdversaryCost(BenchmarkSetup.getDefaultAdversaryCost())
-                                                                        .setAdversaryGain(BenchmarkSetup.getDefaultAdversaryGain())
-                                                                        .setPublisherLoss(BenchmarkSetup.getDefaultPublisherLoss())
-                                                                        .setPublisherBenefit(BenchmarkSetup.getDefaultPublisherBenefit());
+        // Start with results from previous executions
+        File cache = new File("results/"+dataset.toString()+"-experiment3.cache");
+        if (cache.exists()) {
+            TransformationCache.read(cache);
+        }
+        File shares = new File("results/"+dataset.toString()+"-experiment3.shares");
+        if (shares.exists()) {
+            DomainShareCache.read(shares);
+        }
 
+        // Prepare grid
         double[] parameters = BenchmarkSetup.getParametersGainLoss();
+        List<String[]> tasks = new ArrayList<String[]>();
         for (double parameter : parameters) {
-            config.setAdversaryGain(parameter);
-            config.setPublisherLoss(parameter);
+            for (int metric = 0; metric < getMetrics().length; metric++) {
+                tasks.add(new String[] { dataset.toString(), String.valueOf(parameter), String.valueOf(metric) });
+            }
+        }
+        
+        // Execute in worker processes, if requested
+        double[][] results = null;
+        if (workers > 0) {
+            results = new BenchmarkSweep(workers).execute(BenchmarkExperiment3.class, tasks);
+        }
+
+        // Perform
+        for (int i = 0; i < tasks.size(); i++) {
+            String[] task = tasks.get(i);
+            double parameter = Double.valueOf(task[1]);
+            Metric<?> metric = getMetrics()[Integer.valueOf(task[2])];
             System.out.println(" - Adversary gain = publisher loss - " + parameter + " - " + Arrays.toString(parameters));
-            for (Metric<?> metric : new Metric[] { Metric.createPrecomputedLossMetric(1d),
-                    Metric.createPrecomputedNormalizedEntropyMetric(1d),
-                    Metric.createKLDivergenceMetric() }) {
-                BENCHMARK.addRun(metric.getName(), config.getAdversaryGain());
-                analyze(dataset, config, metric);
-                BENCHMARK.getResults().write(new File("results/"+dataset.toString()+"-experiment3.csv"));
+            double[] values = results != null ? results[i] : runTask(task);
+            BENCHMARK.addRun(metric.getName(), parameter);
+            for (int j = 0; j < MEASURES.length; j++) {
+                BENCHMARK.addValue(MEASURES[j], values[j]);
+            }
+            BENCHMARK.getResults().write(new File("results/"+dataset.toString()+"-experiment3.csv"));
+            if (results == null) {
+                TransformationCache.write(cache);
+                DomainShareCache.write(shares);
             }
         }
     }
 
+    /**
+     * Performs a single point of the grid: dataset, adversary gain = publisher loss, index of the metric.
+     * Returns the values in the order of MEASURES.
+     * @param args
+     * @return
+     * @throws IOException
+     */
+    public static double[] runTask(String[] args) throws IOException {
+
+        // Plos|ONE defaults
+        BenchmarkDataset dataset = BenchmarkSetup.getBenchmarkDataset(args[0]);
+        double parameter = Double.valueOf(args[1]);
+        ARXCostBenefitConfiguration config = ARXCostBenefitConfiguration.create()
+                                                                        .setAdversaryCost(BenchmarkSetup.getDefaultAdversaryCost())
+                                                                        .setAdversaryGain(parameter)
+                                                                        .setPublisherLoss(parameter)
+                                                                        .setPublisherBenefit(BenchmarkSetup.getDefaultPublisherBenefit());
+        return analyze(dataset, config, getMetrics()[Integer.valueOf(args[2])]);
+    }
+
+    /**
+     * Returns the metrics
+     * @return
+     */
+    private static Metric<?>[] getMetrics() {
+        return new Metric[] { Metric.createPrecomputedLossMetric(1d),
+                              Metric.createPrecomputedNormalizedEntropyMetric(1d),
+                              Metric.createKLDivergenceMetric() };
+    }
+
     /**
      * Run the benchmark
      * @param dataset
      * @param config
      * @param metric
+     * @return
      * @throws IOException
      */
-    private static void analyze(BenchmarkDataset dataset, ARXCostBenefitConfiguration configuration, Metric<?> metric) throws IOException {
+    private static double[] analyze(BenchmarkDataset dataset, ARXCostBenefitConfiguration configuration, Metric<?> metric) throws IOException {
      
         // Load data
         Data data = BenchmarkSetup.getData(dataset);
         
-        BENCHMARK.addValue(QUALITY_COST_BENEFIT, getCostBenefitQuality(data, configuration, metric));
-        BENCHMARK.addValue(QUALITY_50_AVG_RISK, getAverageRiskQuality(data, configuration, 2, metric));
-        BENCHMARK.addValue(QUALITY_33_AVG_RISK, getAverageRiskQuality(data, configuration, 3, metric));
-        BENCHMARK.addValue(QUALITY_20_AVG_RISK, getAverageRiskQuality(data, configuration, 5, metric));
-        BENCHMARK.addValue(QUALITY_50_IND_RISK, getIndividualRiskQuality(data, configuration, 2, metric));
-        BENCHMARK.addValue(QUALITY_33_IND_RISK, getIndividualRiskQuality(data, configuration, 3, metric));
-        BENCHMARK.addValue(QUALITY_20_IND_RISK, getIndividualRiskQuality(data, configuration, 5, metric));
-        BENCHMARK.addValue(PAYOUT_COST_BENEFIT, getCostBenefitPayout(data, configuration, metric));
-        BENCHMARK.addValue(PAYOUT_OPTIMAL, getCostBenefitPayout(data, configuration));
+        return new double[] { getCostBenefitQuality(data, configuration, metric),
+                              getAverageRiskQuality(data, configuration, 2, metric),
+                              getAverageRiskQuality(data, configuration, 3, metric),
+                              getAverageRiskQuality(data, configuration, 5, metric),
+                              getIndividualRiskQuality(data, configuration, 2, metric),
+                              getIndividualRiskQuality(data, configuration, 3, metric),
+                              getIndividualRiskQuality(data, configuration, 5, metric),
+                              getCostBenefitPayout(data, configuration, metric),
+                              getCostBenefitPayout(data, configuration) };
     }
 }
@@ -98,6 +98,7 @@ public abstract class BenchmarkExperiment4 extends BenchmarkExperiment {
         
         // Setup
         String[] qis = BenchmarkSetup.getQuasiIdentifyingAttributes(dataset);
+        Data data = BenchmarkSetup.getData(dataset);
         
         // Perform
         for (int records = 2000; records <= 30000; records+=2000) {
@@ -111,7 +112,7 @@ public abstract class BenchmarkExperiment4 extends BenchmarkExperiment {
             
             System.out.println("Records: " + records);
             BENCHMARK.addRun();
-            analyze(dataset, config, qis, records, qis.length);
+            analyze(dataset, data, config, qis, records, qis.length);
             BENCHMARK.getResults().write(new File("results/"+dataset.toString()+"-experiment4.csv"));
         }
 
@@ -128,7 +129,7 @@ public abstract class BenchmarkExperiment4 extends BenchmarkExperiment {
 
             System.out.println("Attributes: " + attributes);
             BENCHMARK.addRun();
-            analyze(dataset, config, qis, 30000, attributes);
+            analyze(dataset, data, config, qis, 30000, attributes);
             BENCHMARK.getResults().write(new File("results/"+dataset.toString()+"-experiment4.csv"));
         }
     }
@@ -136,20 +137,20 @@ public abstract class BenchmarkExperiment4 extends BenchmarkExperiment {
     /**
      * Run the benchmark
      * @param dataset
+     * @param input The dataset, from which extracts are created
      * @param qis 
      * @param config
      * @throws IOException
      */
-    private static void analyze(BenchmarkDataset dataset, ARXCostBenefitConfiguration configuration, String[] qis, int records, int attributes) throws IOException {
+    private static void analyze(BenchmarkDataset dataset, Data input, ARXCostBenefitConfiguration configuration, String[] qis, int records, int attributes) throws IOException {
 
         final int REPETITIONS = BenchmarkSetup.getNumberOfRepetitions(dataset);
  
         BENCHMARK.addValue(ATTRIBUTES, attributes);
         BENCHMARK.addValue(RECORDS, records);
         
-        // Load data
-        Data data = BenchmarkSetup.getData(dataset);
-        data = getExtract(data, qis, records, attributes);
+        // Create extract
+        Data data = getExtract(input, qis, records, attributes);
 
         double time = 0d;
 
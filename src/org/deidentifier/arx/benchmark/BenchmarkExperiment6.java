@@ -44,19 +44,33 @@ import de.linearbits.subframe.analyzer.ValueBuffer;
 public abstract class BenchmarkExperiment6 extends BenchmarkExperiment {
 
     /** The benchmark instance */
-    private static final Benchmark BENCHMARK                = new Benchmark(new String[] { "adversary gain = publisher loss" });
+    private static final Benchmark BENCHMARK                     = new Benchmark(new String[] { "adversary gain = publisher loss" });
+    /** Name of the measure */
+    private static final String    TIME_FULL_DOMAIN_NAME         = "TIME Full-domain generalization + record suppression";
     /** TOTAL */
-    private static final int       TIME_FULL_DOMAIN         = BENCHMARK.addMeasure("TIME Full-domain generalization + record suppression");
+    private static final int       TIME_FULL_DOMAIN              = BENCHMARK.addMeasure(TIME_FULL_DOMAIN_NAME);
+    /** Name of the measure */
+    private static final String    PAYOUT_FULL_DOMAIN_NAME       = "PAYOUT Full-domain generalization + record suppression";
     /** TOTAL */
-    private static final int       PAYOUT_FULL_DOMAIN       = BENCHMARK.addMeasure("PAYOUT Full-domain generalization + record suppression");
+    private static final int       PAYOUT_FULL_DOMAIN            = BENCHMARK.addMeasure(PAYOUT_FULL_DOMAIN_NAME);
+    /** Name of the measure */
+    private static final String    TIME_OPTIMAL_RECORD_NAME      = "TIME Optimal record-level generalization";
     /** TOTAL */
-    private static final int       TIME_OPTIMAL_RECORD      = BENCHMARK.addMeasure("TIME Optimal record-level generalization");
+    private static final int       TIME_OPTIMAL_RECORD           = BENCHMARK.addMeasure(TIME_OPTIMAL_RECORD_NAME);
+    /** Name of the measure */
+    private static final String    PAYOUT_OPTIMAL_RECORD_NAME    = "PAYOUT Optimal record-level generalization";
     /** TOTAL */
-    private static final int       PAYOUT_OPTIMAL_RECORD    = BENCHMARK.addMeasure("PAYOUT Optimal record-level generalization");
+    private static final int       PAYOUT_OPTIMAL_RECORD         = BENCHMARK.addMeasure(PAYOUT_OPTIMAL_RECORD_NAME);
+    /** Name of the measure */
+    private static final String    TIME_MULTI_DIMENSIONAL_NAME   = "TIME Multi-dimensional global recoding";
     /** TOTAL */
-    private static final int       TIME_MULTI_DIMENSIONAL   = BENCHMARK.addMeasure("TIME Multi-dimensional global recoding");
+    private static final int       TIME_MULTI_DIMENSIONAL        = BENCHMARK.addMeasure(TIME_MULTI_DIMENSIONAL_NAME);
+    /** Name of the measure */
+    private static final String    PAYOUT_MULTI_DIMENSIONAL_NAME = "PAYOUT Multi-dimensional global recoding";
     /** TOTAL */
-    private static final int       PAYOUT_MULTI_DIMENSIONAL = BENCHMARK.addMeasure("PAYOUT Multi-dimensional global recoding");
+    private static final int       PAYOUT_MULTI_DIMENSIONAL      = BENCHMARK.addMeasure(PAYOUT_MULTI_DIMENSIONAL_NAME);
+    /** Durable store for measurements */
+    private static BenchmarkResultStore STORE;
 
     /**
      * Main
@@ -83,6 +97,9 @@ public abstract class BenchmarkExperiment6 extends BenchmarkExperiment {
         BENCHMARK.addAnalyzer(TIME_MULTI_DIMENSIONAL, new ValueBuffer());
         BENCHMARK.addAnalyzer(PAYOUT_MULTI_DIMENSIONAL, new ValueBuffer());
         
+        // Open store, completed points will be skipped
+        STORE = new BenchmarkResultStore(new File("results/"+dataset.toString()+"-experiment6.store"));
+        
         // Perform
         for (double gainloss : BenchmarkSetup.getParametersGainLoss()) {
             config.setAdversaryGain(gainloss);
@@ -92,6 +109,7 @@ public abstract class BenchmarkExperiment6 extends BenchmarkExperiment {
             analyze(dataset, config);
             BENCHMARK.getResults().write(new File("results/"+dataset.toString()+"-experiment6.csv"));
         }
+        STORE.close();
     }
 
     /**
@@ -104,32 +122,49 @@ public abstract class BenchmarkExperiment6 extends BenchmarkExperiment {
     private static void analyze(BenchmarkDataset dataset, ARXCostBenefitConfiguration configuration) throws IOException, RollbackRequiredException {
 
         final int REPETITIONS = BenchmarkSetup.getNumberOfRepetitions(dataset);
+        final String RUN = BenchmarkResultStore.getKey("experiment6", dataset, configuration);
      
         // Load data
         Data data = BenchmarkSetup.getData(dataset);
         
         // GLOBAL RECODING TIME
+        if (!STORE.contains(RUN, TIME_FULL_DOMAIN_NAME, PAYOUT_FULL_DOMAIN_NAME)) {
 
-        // Warmup run
-        getExecutionTime(data, configuration, true);
-        
-        // Repetitions
-        double time = 0d;
-        for (int i=0; i < REPETITIONS; i++) {
-            time += getExecutionTime(data, configuration, true); 
+            // Warmup run
+            getExecutionTime(data, configuration, true);
+            
+            // Repetitions
+            double time = 0d;
+            for (int i=0; i < REPETITIONS; i++) {
+                time += getExecutionTime(data, configuration, true); 
+            }
+            time /= (REPETITIONS * 1000d);
+            STORE.put(RUN, TIME_FULL_DOMAIN_NAME, time);
+            STORE.put(RUN, PAYOUT_FULL_DOMAIN_NAME, getCostBenefitPayout(data, configuration));
         }
-        time /= (REPETITIONS * 1000d);
-        BENCHMARK.addValue(TIME_FULL_DOMAIN, time);
-        BENCHMARK.addValue(PAYOUT_FULL_DOMAIN, getCostBenefitPayout(data, configuration));
+        BENCHMARK.addValue(TIME_FULL_DOMAIN, STORE.get(RUN, TIME_FULL_DOMAIN_NAME));
+        BENCHMARK.addValue(PAYOUT_FULL_DOMAIN, STORE.get(RUN, PAYOUT_FULL_DOMAIN_NAME));
         
-        time = System.currentTimeMillis();
-        BENCHMARK.addValue(PAYOUT_OPTIMAL_RECORD, getRecordLevelPayout(data, configuration, true));
-        time = (System.currentTimeMillis() - time) / 1000d;
-        BENCHMARK.addValue(TIME_OPTIMAL_RECORD, time);
+        // OPTIMAL RECORD-LEVEL
+        if (!STORE.contains(RUN, TIME_OPTIMAL_RECORD_NAME, PAYOUT_OPTIMAL_RECORD_NAME)) {
+            double time = System.currentTimeMillis();
+            double payout = getRecordLevelPayout(data, configuration, true);
+            time = (System.currentTimeMillis() - time) / 1000d;
+            STORE.put(RUN, PAYOUT_OPTIMAL_RECORD_NAME, payout);
+            STORE.put(RUN, TIME_OPTIMAL_RECORD_NAME, time);
+        }
+        BENCHMARK.addValue(PAYOUT_OPTIMAL_RECORD, STORE.get(RUN, PAYOUT_OPTIMAL_RECORD_NAME));
+        BENCHMARK.addValue(TIME_OPTIMAL_RECORD, STORE.get(RUN, TIME_OPTIMAL_RECORD_NAME));
 
-        time = System.currentTimeMillis();
-        BENCHMARK.addValue(PAYOUT_MULTI_DIMENSIONAL, getMultidimensionalGlobalPayout(data, configuration));
-        time = (System.currentTimeMillis() - time) / 1000d;
-        BENCHMARK.addValue(TIME_MULTI_DIMENSIONAL, time);
+        // MULTI-DIMENSIONAL
+        if (!STORE.contains(RUN, TIME_MULTI_DIMENSIONAL_NAME, PAYOUT_MULTI_DIMENSIONAL_NAME)) {
+            double time = System.currentTimeMillis();
+            double payout = getMultidimensionalGlobalPayout(data, configuration);
+            time = (System.currentTimeMillis() - time) / 1000d;
+            STORE.put(RUN, PAYOUT_MULTI_DIMENSIONAL_NAME, payout);
+            STORE.put(RUN, TIME_MULTI_DIMENSIONAL_NAME, time);
+        }
+        BENCHMARK.addValue(PAYOUT_MULTI_DIMENSIONAL, STORE.get(RUN, PAYOUT_MULTI_DIMENSIONAL_NAME));
+        BENCHMARK.addValue(TIME_MULTI_DIMENSIONAL, STORE.get(RUN, TIME_MULTI_DIMENSIONAL_NAME));
     }
 }
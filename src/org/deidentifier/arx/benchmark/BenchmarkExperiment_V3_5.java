@@ -27,7 +27,6 @@ import java.io.IOException;
 import org.deidentifier.arx.ARXCostBenefitConfiguration;
 import org.deidentifier.arx.Data;
 import org.deidentifier.arx.DataSubset;
-import org.deidentifier.arx.algorithm.FLASHAlgorithmImpl;
 import org.deidentifier.arx.benchmark.BenchmarkSetup.BenchmarkDataset;
 
 import cern.colt.Arrays;
@@ -100,9 +99,7 @@ public abstract class BenchmarkExperiment_V3_5 extends BenchmarkExperiment {
         BENCHMARK.addValue(TIME_FULL_DOMAIN_PRUNING, getExecutionTime(new Runnable(){
             public void run() {
                 try {
-                    FLASHAlgorithmImpl.USE_LOWER_BOUND = true;
-                    getCostBenefitPayoutPopulationTable(data, subset, configuration);
-                    FLASHAlgorithmImpl.USE_LOWER_BOUND = true;
+                    getCostBenefitPayoutPopulationTable(data, subset, configuration, true);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -113,9 +110,7 @@ public abstract class BenchmarkExperiment_V3_5 extends BenchmarkExperiment {
         BENCHMARK.addValue(TIME_FULL_DOMAIN_NO_PRUNING, getExecutionTime(new Runnable(){
             public void run() {
                 try {
-                    FLASHAlgorithmImpl.USE_LOWER_BOUND = false;
-                    getCostBenefitPayoutPopulationTable(data, subset, configuration);
-                    FLASHAlgorithmImpl.USE_LOWER_BOUND = true;
+                    getCostBenefitPayoutPopulationTable(data, subset, configuration, false);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
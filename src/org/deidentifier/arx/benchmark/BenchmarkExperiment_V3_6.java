@@ -27,7 +27,6 @@ import java.util.concurrent.Callable;
 import org.deidentifier.arx.ARXCostBenefitConfiguration;
 import org.deidentifier.arx.Data;
 import org.deidentifier.arx.DataSubset;
-import org.deidentifier.arx.algorithm.FLASHAlgorithm;
 import org.deidentifier.arx.benchmark.BenchmarkSetup.BenchmarkDataset;
 
 import cern.colt.Arrays;
@@ -101,8 +100,6 @@ public abstract class BenchmarkExperiment_V3_6 extends BenchmarkExperiment {
         final Data dataset = BenchmarkSetup.getData(BenchmarkDataset.ADULT_TN_288);
         final DataSubset subset = BenchmarkSetup.getDataSubset(BenchmarkDataset.ADULT_TN_288_TABLE);
         
-        FLASHAlgorithm.DEFAULT_TO_NONE_NONE = true;
-        
         // Run benchmarks
         BENCHMARK.addValue(TABLE_NAIVE, getExecutionTime(new Callable<Long>(){
             @Override
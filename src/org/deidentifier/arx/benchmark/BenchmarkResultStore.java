@@ -0,0 +1,227 @@
+/*
+ * Benchmark of ARX's implementation of the game theoretic approach proposed in:
+ * A Game Theoretic Framework for Analyzing Re-Identification Risk.
+ * Zhiyu Wan, Yevgeniy Vorobeychik, Weiyi Xia, Ellen Wright Clayton,
+ * Murat Kantarcioglu, Ranjit Ganta, Raymond Heatherly, Bradley A. Malin
+ * PLOS|ONE. 2015.
+ *
+ * Copyright 2017 - Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.deidentifier.arx.ARXCostBenefitConfiguration;
+import org.deidentifier.arx.benchmark.BenchmarkSetup.BenchmarkDataset;
+
+/**
+ * A durable store for measurements. Each measurement is appended to a binary log
+ * and forced to disk as soon as it has been produced. When the store is opened,
+ * the log is scanned once to build an index, which allows to skip all points of
+ * a sweep that have already been completed. A partially written record at the end
+ * of the log, e.g. caused by a crash, is discarded. Measures are addressed by their
+ * names, which means that stored values remain valid if measures are added or reordered.<br>
+ * <br>
+ * Record format: [int length][UTF key][double value][int checksum]
+ */
+public class BenchmarkResultStore {
+
+    /**
+     * Returns a key for a run of the given experiment with the given parameters
+     * @param experiment
+     * @param dataset
+     * @param configuration
+     * @param flags Further parameters, e.g. algorithm flags
+     * @return
+     */
+    public static String getKey(String experiment, BenchmarkDataset dataset, ARXCostBenefitConfiguration configuration, Object... flags) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(experiment).append('|').append(dataset);
+        builder.append('|').append(configuration.getAdversaryCost());
+        builder.append('|').append(configuration.getAdversaryGain());
+        builder.append('|').append(configuration.getPublisherLoss());
+        builder.append('|').append(configuration.getPublisherBenefit());
+        for (Object flag : flags) {
+            builder.append('|').append(flag);
+        }
+        return builder.toString();
+    }
+
+    /** The log */
+    private final RandomAccessFile    file;
+
+    /** The channel */
+    private final FileChannel         channel;
+
+    /** The index */
+    private final Map<String, Double> index = new HashMap<String, Double>();
+
+    /**
+     * Opens the store backed by the given file, which will be created if it does not exist
+     * @param file
+     * @throws IOException
+     */
+    public BenchmarkResultStore(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.channel = this.file.getChannel();
+        this.load();
+    }
+
+    /**
+     * Closes the store
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        this.file.close();
+    }
+
+    /**
+     * Returns whether values for all of the given measures have been stored for the given run
+     * @param run
+     * @param measures
+     * @return
+     */
+    public boolean contains(String run, String... measures) {
+        for (String measure : measures) {
+            if (!index.containsKey(getKey(run, measure))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value stored for the given measure of the given run
+     * @param run
+     * @param measure
+     * @return
+     */
+    public double get(String run, String measure) {
+        Double value = index.get(getKey(run, measure));
+        if (value == null) {
+            throw new IllegalArgumentException("No value stored for: " + getKey(run, measure));
+        }
+        return value;
+    }
+
+    /**
+     * Durably stores the value for the given measure of the given run
+     * @param run
+     * @param measure
+     * @param value
+     * @throws IOException
+     */
+    public void put(String run, String measure, double value) throws IOException {
+
+        // Prepare
+        String key = getKey(run, measure);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeUTF(key);
+        output.writeDouble(value);
+        output.flush();
+        byte[] payload = bytes.toByteArray();
+
+        // Append
+        ByteBuffer buffer = ByteBuffer.allocate(payload.length + 8);
+        buffer.putInt(payload.length);
+        buffer.put(payload);
+        buffer.putInt(getChecksum(payload));
+        buffer.flip();
+        channel.position(channel.size());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+
+        // Index
+        index.put(key, value);
+    }
+
+    /**
+     * Returns the checksum of the given payload
+     * @param payload
+     * @return
+     */
+    private int getChecksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the key of a measure
+     * @param run
+     * @param measure The name of the measure
+     * @return
+     */
+    private String getKey(String run, String measure) {
+        return run + '#' + measure;
+    }
+
+    /**
+     * Builds the index and discards incomplete records
+     * @throws IOException
+     */
+    private void load() throws IOException {
+
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(4);
+        while (position + 4 <= size) {
+
+            // Read length
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            if (length <= 0 || position + 4 + length + 4 > size) {
+                break;
+            }
+
+            // Read record
+            ByteBuffer record = ByteBuffer.allocate(length + 4);
+            channel.read(record, position + 4);
+            record.flip();
+            byte[] payload = new byte[length];
+            record.get(payload);
+            if (record.getInt() != getChecksum(payload)) {
+                break;
+            }
+
+            // Decode and index
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+            index.put(input.readUTF(), input.readDouble());
+            position += 4 + length + 4;
+        }
+
+        // Discard incomplete records
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(false);
+        }
+    }
+}
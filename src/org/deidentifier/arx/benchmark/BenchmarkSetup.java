@@ -21,6 +21,7 @@
  */
 package org.deidentifier.arx.benchmark;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 
@@ -135,37 +136,37 @@ public class BenchmarkSetup {
         Data data = null;
         switch (dataset) {
         case ADULT:
-            data = Data.create("data/adult.csv", Charset.defaultCharset(), ';');
+            data = getData("data/adult.csv", ';');
             break;
         case ADULT_NC:
-            data = Data.create("data/adult_nc.csv", Charset.defaultCharset(), ';');
+            data = getData("data/adult_nc.csv", ';');
             break;
         case ADULT_TN:
-            data = Data.create("data/adult_tn.csv", Charset.defaultCharset(), ';');
+            data = getData("data/adult_tn.csv", ';');
             break;
         case ADULT_TN_288:
-            data = Data.create("data/adult_tn_288.csv", Charset.defaultCharset(), ',');
+            data = getData("data/adult_tn_288.csv", ',');
             break;
         case ADULT_TN_288_TABLE:
-            data = Data.create("data/adult_tn_288_table.csv", Charset.defaultCharset(), ';');
+            data = getData("data/adult_tn_288_table.csv", ';');
             break;
         case ADULT_TN_288_TABLE_SAFE_HARBOR:
-            data = Data.create("data/adult_tn_288_table.csv", Charset.defaultCharset(), ';');
+            data = getData("data/adult_tn_288_table.csv", ';');
             break;
         case ADULT_TN_SAFE_HARBOR:
-            data = Data.create("data/adult_tn.csv", Charset.defaultCharset(), ';');
+            data = getData("data/adult_tn.csv", ';');
             break;
         case ATUS:
-            data = Data.create("data/atus.csv", Charset.defaultCharset(), ';');
+            data = getData("data/atus.csv", ';');
             break;
         case CUP:
-            data = Data.create("data/cup.csv", Charset.defaultCharset(), ';');
+            data = getData("data/cup.csv", ';');
             break;
         case FARS:
-            data = Data.create("data/fars.csv", Charset.defaultCharset(), ';');
+            data = getData("data/fars.csv", ';');
             break;
         case IHIS:
-            data = Data.create("data/ihis.csv", Charset.defaultCharset(), ';');
+            data = getData("data/ihis.csv", ';');
             break;
         default:
             throw new RuntimeException("Invalid dataset");
@@ -187,6 +188,25 @@ public class BenchmarkSetup {
         return data;
     }
 
+    /**
+     * Loads the given CSV file. If enabled with the system property arx.benchmark.binary and an
+     * up-to-date binary representation is available, it is used instead. If enabled with the
+     * system property arx.benchmark.streaming, the file is ingested with the streaming reader.
+     * @param file
+     * @param separator
+     * @return
+     * @throws IOException
+     */
+    private static Data getData(String file, char separator) throws IOException {
+        if (Boolean.getBoolean("arx.benchmark.binary") && BenchmarkDataFile.isAvailable(file)) {
+            return BenchmarkDataFile.read(BenchmarkDataFile.getFile(file));
+        } else if (Boolean.getBoolean("arx.benchmark.streaming")) {
+            return Data.create(BenchmarkCSVReader.read(new File(file), Charset.defaultCharset(), separator).iterator());
+        } else {
+            return Data.create(file, Charset.defaultCharset(), separator);
+        }
+    }
+
     /**
      * Configures and returns the dataset
      * @param dataset
@@ -200,8 +220,8 @@ public class BenchmarkSetup {
         case ADULT:
         case ADULT_TN_288_TABLE:
         case ADULT_TN_288_TABLE_SAFE_HARBOR:
-            return DataSubset.create(Data.create("data/adult_tn_288_table.csv", Charset.defaultCharset(), ';'),
-                                     Data.create("data/adult_tn_288.csv", Charset.defaultCharset(), ','));
+            return DataSubset.create(getData("data/adult_tn_288_table.csv", ';'),
+                                     getData("data/adult_tn_288.csv", ','));
         default:
             break;
         }        
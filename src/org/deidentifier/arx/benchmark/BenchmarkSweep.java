@@ -0,0 +1,315 @@
+/*
+ * Benchmark of ARX's implementation of the game theoretic approach proposed in:
+ * A Game Theoretic Framework for Analyzing Re-Identification Risk.
+ * Zhiyu Wan, Yevgeniy Vorobeychik, Weiyi Xia, Ellen Wright Clayton,
+ * Murat Kantarcioglu, Ranjit Ganta, Raymond Heatherly, Bradley A. Malin
+ * PLOS|ONE. 2015.
+ *
+ * Copyright 2017 - Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Executes the points of an experiment's parameter grid in separate worker processes.
+ * Each worker has its own heap, so tasks do not interfere via garbage collection. Tasks
+ * are distributed round-robin to one deque per worker. Workers process their own deque
+ * from the head and, when it is empty, steal from the tail of the fullest other deque.
+ * Workers communicate with the coordinator via pipes. To run workers on other machines,
+ * the command can be prefixed, e.g. with <code>ssh host</code>. If a worker process
+ * terminates unexpectedly, it is restarted and its current task is retried, up to a
+ * fixed number of attempts per task.
+ */
+public class BenchmarkSweep {
+
+    /** Maximal number of attempts to execute a task, if worker processes terminate */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Returns the command for starting a worker on the local machine with the current classpath.
+     * System properties prefixed with arx.benchmark. are passed on to the worker.
+     * @return
+     */
+    public static List<String> getLocalWorkerCommand() {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        for (String property : System.getProperties().stringPropertyNames()) {
+            if (property.startsWith("arx.benchmark.")) {
+                command.add("-D" + property + "=" + System.getProperty(property));
+            }
+        }
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), BenchmarkWorker.class.getName()));
+        return command;
+    }
+
+    /** Number of workers */
+    private final int          workers;
+
+    /** Command for starting a worker */
+    private final List<String> command;
+
+    /**
+     * Creates a new instance with local workers
+     * @param workers
+     */
+    public BenchmarkSweep(int workers) {
+        this(workers, getLocalWorkerCommand());
+    }
+
+    /**
+     * Creates a new instance
+     * @param workers
+     * @param command
+     */
+    public BenchmarkSweep(int workers, List<String> command) {
+        if (workers <= 0) { throw new IllegalArgumentException("Number of workers must be > 0"); }
+        this.workers = workers;
+        this.command = new ArrayList<String>(command);
+    }
+
+    /**
+     * Executes the given tasks with the static method <code>double[] runTask(String[] args)</code>
+     * of the given experiment and returns the results in the order of the tasks
+     * @param experiment
+     * @param tasks
+     * @return
+     * @throws IOException
+     */
+    public double[][] execute(final Class<?> experiment, final List<String[]> tasks) throws IOException {
+
+        // Check
+        for (String[] task : tasks) {
+            for (String arg : task) {
+                if (arg.contains(BenchmarkWorker.SEPARATOR) || arg.contains("\n")) {
+                    throw new IllegalArgumentException("Illegal argument: " + arg);
+                }
+            }
+        }
+
+        // Distribute tasks
+        final List<LinkedBlockingDeque<Integer>> deques = new ArrayList<LinkedBlockingDeque<Integer>>();
+        for (int i = 0; i < workers; i++) {
+            deques.add(new LinkedBlockingDeque<Integer>());
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            deques.get(i % workers).addLast(i);
+        }
+
+        // Start workers
+        final double[][] results = new double[tasks.size()][];
+        final String[] errors = new String[tasks.size()];
+        final int[] attempts = new int[tasks.size()];
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < workers; i++) {
+            final int index = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        work(deques, index, experiment, tasks, results, errors, attempts);
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // Wait
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        // Check
+        if (!failures.isEmpty()) {
+            IOException exception = new IOException("Worker failed", failures.get(0));
+            for (int i = 1; i < failures.size(); i++) {
+                exception.addSuppressed(failures.get(i));
+            }
+            throw exception;
+        }
+        for (int i = 0; i < tasks.size(); i++) {
+            if (errors[i] != null) {
+                throw new IllegalStateException("Task " + Arrays.toString(tasks.get(i)) + " failed: " + errors[i]);
+            }
+            if (results[i] == null) {
+                throw new IllegalStateException("Task " + Arrays.toString(tasks.get(i)) + " has not been executed");
+            }
+        }
+
+        // Return
+        return results;
+    }
+
+    /**
+     * Returns the next task for the given worker, stealing from other workers if required
+     * @param deques
+     * @param index
+     * @return
+     */
+    private Integer next(List<LinkedBlockingDeque<Integer>> deques, int index) {
+
+        // Own tasks
+        Integer task = deques.get(index).pollFirst();
+        while (task == null) {
+
+            // Find victim
+            LinkedBlockingDeque<Integer> victim = null;
+            for (LinkedBlockingDeque<Integer> deque : deques) {
+                if (victim == null || deque.size() > victim.size()) {
+                    victim = deque;
+                }
+            }
+            if (victim == null || victim.isEmpty()) {
+                return null;
+            }
+
+            // Steal
+            task = victim.pollLast();
+        }
+        return task;
+    }
+
+    /**
+     * Executes the given task with the given worker process
+     * @param output
+     * @param input
+     * @param task
+     * @param experiment
+     * @param tasks
+     * @param results
+     * @param errors
+     * @throws IOException If the worker has terminated or does not respond as expected
+     */
+    private void execute(BufferedWriter output,
+                         BufferedReader input,
+                         int task,
+                         Class<?> experiment,
+                         List<String[]> tasks,
+                         double[][] results,
+                         String[] errors) throws IOException {
+
+        // Send
+        StringBuilder builder = new StringBuilder();
+        builder.append(task).append(BenchmarkWorker.SEPARATOR).append(experiment.getName());
+        for (String arg : tasks.get(task)) {
+            builder.append(BenchmarkWorker.SEPARATOR).append(arg);
+        }
+        output.write(builder.toString());
+        output.newLine();
+        output.flush();
+
+        // Receive
+        String line = input.readLine();
+        if (line == null) {
+            throw new IOException("Worker terminated unexpectedly");
+        }
+        String[] fields = line.split(BenchmarkWorker.SEPARATOR, -1);
+        if (!fields[0].equals(String.valueOf(task))) {
+            throw new IOException("Unexpected response: " + line);
+        }
+        if (fields[1].equals(BenchmarkWorker.OK)) {
+            double[] result = new double[fields.length - 2];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = Double.parseDouble(fields[i + 2]);
+            }
+            results[task] = result;
+        } else {
+            errors[task] = fields.length > 2 ? fields[2] : line;
+        }
+    }
+
+    /**
+     * Processes tasks until no more tasks are available. Starts a worker process and restarts
+     * it if it terminates unexpectedly. In this case, the current task is retried, unless it
+     * has already been attempted too often.
+     * @param deques
+     * @param index
+     * @param experiment
+     * @param tasks
+     * @param results
+     * @param errors
+     * @param attempts
+     * @throws IOException If a worker process cannot be started
+     */
+    private void work(List<LinkedBlockingDeque<Integer>> deques,
+                      int index,
+                      Class<?> experiment,
+                      List<String[]> tasks,
+                      double[][] results,
+                      String[] errors,
+                      int[] attempts) throws IOException {
+
+        Integer task = next(deques, index);
+        while (task != null) {
+
+            // Start worker
+            Process process = new ProcessBuilder(command).redirectError(Redirect.INHERIT).start();
+            BufferedWriter output = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+            BufferedReader input = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            try {
+
+                // Process tasks
+                while (task != null) {
+                    attempts[task]++;
+                    execute(output, input, task, experiment, tasks, results, errors);
+                    task = next(deques, index);
+                }
+
+            } catch (IOException e) {
+
+                // Retry with a new worker or give up
+                process.destroy();
+                if (attempts[task] >= MAX_ATTEMPTS) {
+                    errors[task] = "Worker terminated " + attempts[task] + " times: " + e.getMessage();
+                    task = next(deques, index);
+                }
+
+            } finally {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    // Ignore, the worker may already have terminated
+                }
+                try {
+                    process.waitFor();
+                } catch (InterruptedException e) {
+                    process.destroy();
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+}
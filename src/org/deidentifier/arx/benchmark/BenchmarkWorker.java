@@ -0,0 +1,93 @@
+/*
+ * Benchmark of ARX's implementation of the game theoretic approach proposed in:
+ * A Game Theoretic Framework for Analyzing Re-Identification Risk.
+ * Zhiyu Wan, Yevgeniy Vorobeychik, Weiyi Xia, Ellen Wright Clayton,
+ * Murat Kantarcioglu, Ranjit Ganta, Raymond Heatherly, Bradley A. Malin
+ * PLOS|ONE. 2015.
+ *
+ * Copyright 2017 - Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+
+/**
+ * A worker process for {@link BenchmarkSweep}. Reads one task per line from standard input
+ * and writes one result per line to standard output. A task consists of an identifier, the
+ * name of an experiment class and the arguments for its static method
+ * <code>double[] runTask(String[] args)</code>, separated by tabs. Output produced by the
+ * experiments themselves is redirected to standard error.
+ */
+public class BenchmarkWorker {
+
+    /** Response for successful tasks */
+    public static final String OK        = "OK";
+
+    /** Response for failed tasks */
+    public static final String ERROR     = "ERROR";
+
+    /** Separator */
+    public static final String SEPARATOR = "\t";
+
+    /**
+     * Main entry point
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+
+        // Reserve standard output for the protocol
+        PrintStream protocol = System.out;
+        System.setOut(System.err);
+
+        // Process tasks
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = input.readLine()) != null) {
+            String[] fields = line.split(SEPARATOR, -1);
+            String id = fields[0];
+            try {
+                double[] result = execute(fields[1], Arrays.copyOfRange(fields, 2, fields.length));
+                StringBuilder builder = new StringBuilder();
+                builder.append(id).append(SEPARATOR).append(OK);
+                for (double value : result) {
+                    builder.append(SEPARATOR).append(value);
+                }
+                protocol.println(builder.toString());
+            } catch (Exception e) {
+                Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                cause.printStackTrace();
+                protocol.println(id + SEPARATOR + ERROR + SEPARATOR + String.valueOf(cause).replaceAll("\\s", " "));
+            }
+            protocol.flush();
+        }
+    }
+
+    /**
+     * Executes a task
+     * @param experiment
+     * @param args
+     * @return
+     * @throws Exception
+     */
+    static double[] execute(String experiment, String[] args) throws Exception {
+        return (double[]) Class.forName(experiment).getMethod("runTask", String[].class).invoke(null, (Object) args);
+    }
+}
@@ -17,18 +17,11 @@
 
 package org.deidentifier.arx.criteria;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.DataSubset;
 import org.deidentifier.arx.PopulationStatistics;
 import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
 import org.deidentifier.arx.framework.data.DataManager;
-import org.deidentifier.arx.framework.data.Dictionary;
-import org.deidentifier.arx.framework.data.GeneralizationHierarchy;
 import org.deidentifier.arx.framework.lattice.Transformation;
 import org.deidentifier.arx.metric.v2.MetricSDNMEntropyBasedInformationLoss;
 
@@ -46,9 +39,6 @@ public class ProfitabilityJournalist extends ProfitabilityProsecutor {
     /** SVUID */
     private static final long serialVersionUID = 5089787798100584405L;
 
-    /** Implements a naive version of the "No-Attack" variant */
-    public static boolean     NAIVE_NO_ATTACK  = false;
-
     /** Data subset */
     private DataSubset        subset;
 
@@ -58,6 +48,9 @@ public class ProfitabilityJournalist extends ProfitabilityProsecutor {
     /** Local recoding */
     private boolean           optimize         = false;
 
+    /** Use census data */
+    private boolean           census           = false;
+
     /**
      * Creates a new instance of game theoretic approach proposed in:
      * A Game Theoretic Framework for Analyzing Re-Identification Risk.
@@ -94,57 +87,24 @@ public class ProfitabilityJournalist extends ProfitabilityProsecutor {
     public void initialize(DataManager manager, ARXConfiguration config) {
         super.initialize(manager, config);
         this.gsFactor = config.getQualityModel().getGeneralizationSuppressionFactor();
-        this.hierarchies = manager.getHierarchies();
-        this.dictionary = manager.getDataGeneralized().getDictionary();
-    }
-
-    /** Hook for use of census data */
-    public static boolean               USE_CENSUS_DATA  = false;
-
-
-    private GeneralizationHierarchy[] hierarchies;
-    private Dictionary dictionary;
-
-    /**
-     * Creates the census map
-     * @return
-     */
-    private Map<Integer, Set<String>>[] getCensusMap() {
-        @SuppressWarnings("unchecked")
-        Map<Integer, Set<String>>[] result = new Map[4];
-        for (int i=0; i<hierarchies.length; i++) {
-            result[i] = new HashMap<Integer, Set<String>>();
-            int[][] array = hierarchies[i].getArray();
-            for (int column = 0; column < array[0].length; column++) {
-                for (int row = 0; row < array.length; row++) {
-                    String value = dictionary.getMapping()[i][array[row][0]];
-                    int key = array[row][column];
-                    if (!result[i].containsKey(key)) {
-                        result[i].put(key, new HashSet<String>());
-                    }
-                    result[i].get(key).add(value);
-                }
-            }
+        this.census = config.isCensusDataEnabled();
+        if (this.census && this.CENSUS_ids == null) {
+            String[] header = manager.getDataGeneralized().getHeader();
+            this.CENSUS_ids = PopulationStatistics.getIds(header,
+                                                          manager.getHierarchies(),
+                                                          manager.getDataGeneralized().getDictionary().getMapping());
+            this.CENSUS_dimensions = PopulationStatistics.getDimensions(header);
         }
-        return result;
     }
 
-    private Map<Integer, Set<String>>[] CENSUS_map = null;
+    /** Census ids, [attribute][code]->ids */
+    private int[][][] CENSUS_ids = null;
+
+    /** Census dimension of each attribute */
+    private int[] CENSUS_dimensions = null;
 
     private double getSuccessProbabilityCensus(HashGroupifyEntry entry) {
-        if (CENSUS_map == null) {
-            CENSUS_map = getCensusMap();
-        }
-        double size = 0d;
-        for(String value0 : CENSUS_map[0].get(entry.key[0])) {
-            for(String value1 : CENSUS_map[1].get(entry.key[1])) {
-                for(String value2 : CENSUS_map[2].get(entry.key[2])) {
-                    for(String value3 : CENSUS_map[3].get(entry.key[3])) {
-                        size += PopulationStatistics.getSize(new String[]{value0, value1, value2, value3});
-                    }    
-                }    
-            }    
-        }
+        double size = PopulationStatistics.getSize(CENSUS_ids, CENSUS_dimensions, entry.key);
         if (size == 0d) {
             throw new RuntimeException("This record does not exist in the population!");
         }
@@ -164,6 +124,14 @@ public class ProfitabilityJournalist extends ProfitabilityProsecutor {
         return true;
     }
 
+    /**
+     * Returns whether the publisher's payout is optimized
+     * @return
+     */
+    public boolean isOptimize() {
+        return optimize;
+    }
+
     public void setOptimize(boolean optimize) {
         this.optimize = optimize;
     }
@@ -176,9 +144,9 @@ public class ProfitabilityJournalist extends ProfitabilityProsecutor {
             return false;
         }
         
-        double successProbability = USE_CENSUS_DATA ? getSuccessProbabilityCensus(entry) : getSuccessProbability(entry);
+        double successProbability = census ? getSuccessProbabilityCensus(entry) : getSuccessProbability(entry);
         double adversaryPayoff = (config.getAdversaryGain() * successProbability - config.getAdversaryCost());
-        if (NAIVE_NO_ATTACK && adversaryPayoff >= 0){
+        if (naiveNoAttack && adversaryPayoff >= 0){
             return false;
         }
         
@@ -188,7 +156,8 @@ public class ProfitabilityJournalist extends ProfitabilityProsecutor {
                                                                                                       shares,
                                                                                                       this.microaggregationFunctions,
                                                                                                       this.microaggregationStartIndex,
-                                                                                                      maxIL);
+                                                                                                      maxIL,
+                                                                                                      simplified);
         
         // Arguments will be checked in subsequent method calls
         double publisherPayoff = (config.getPublisherBenefit() * (1d - informationLoss)) - 
@@ -208,6 +177,11 @@ public class ProfitabilityJournalist extends ProfitabilityProsecutor {
         return toString("journalist");
     }
 
+    @Override
+    protected boolean isDecisionTableUsed() {
+        return false;
+    }
+
     @Override
     protected double getSuccessProbability(HashGroupifyEntry entry) {
         return entry.pcount == 0 ? 1d / entry.count : 1d / entry.pcount;
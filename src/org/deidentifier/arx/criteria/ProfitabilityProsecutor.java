@@ -24,7 +24,7 @@ import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFu
 import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
 import org.deidentifier.arx.framework.data.DataManager;
 import org.deidentifier.arx.framework.lattice.Transformation;
-import org.deidentifier.arx.metric.v2.DomainShare;
+import org.deidentifier.arx.metric.v2.DomainShareTable;
 import org.deidentifier.arx.metric.v2.MetricSDNMEntropyBasedInformationLoss;
 import org.deidentifier.arx.risk.RiskModelCostBenefit;
 
@@ -40,15 +40,25 @@ import org.deidentifier.arx.risk.RiskModelCostBenefit;
 public class ProfitabilityProsecutor extends ImplicitPrivacyCriterion {
 
     /** SVUID */
-    private static final long               serialVersionUID = -1698534839214708559L;
+    private static final long               serialVersionUID       = -1698534839214708559L;
 
-    public static boolean NAIVE_NO_ATTACK = false;
+    /** Maximal class size for which decisions are precomputed */
+    private static final int                DECISIONS_MAX_SIZE     = 1 << 16;
+
+    /** Decision: the information loss of the class needs to be considered */
+    private static final byte               DECISION_UNKNOWN       = 0;
+
+    /** Decision: the class is anonymous regardless of its information loss */
+    private static final byte               DECISION_ANONYMOUS     = 1;
+
+    /** Decision: the class is not anonymous regardless of its information loss */
+    private static final byte               DECISION_NOT_ANONYMOUS = 2;
 
     /** Configuration */
     protected ARXCostBenefitConfiguration     config;
 
     /** Domain shares for each dimension. */
-    protected DomainShare[]                   shares;
+    protected DomainShareTable[]              shares;
 
     /** The microaggregation functions. */
     protected DistributionAggregateFunction[] microaggregationFunctions;
@@ -65,6 +75,15 @@ public class ProfitabilityProsecutor extends ImplicitPrivacyCriterion {
     /** Risk model */
     protected RiskModelCostBenefit            riskModel;
 
+    /** Implements a naive version of the "No-Attack" variant */
+    protected boolean                         naiveNoAttack;
+
+    /** Use the simplified expression for entropy-based information loss */
+    protected boolean                         simplified;
+
+    /** Decisions indexed by class size */
+    private transient byte[]                  decisions;
+
     /**
      * Creates a new instance of game theoretic approach proposed in:
      * A Game Theoretic Framework for Analyzing Re-Identification Risk.
@@ -108,6 +127,8 @@ public class ProfitabilityProsecutor extends ImplicitPrivacyCriterion {
         this.shares =  manager.getDomainShares();
         this.config = config.getCostBenefitConfiguration();
         this.riskModel = new RiskModelCostBenefit(this.config);
+        this.naiveNoAttack = config.isNaiveNoAttackEnabled();
+        this.simplified = config.isEntropyExpressionSimplified();
 
         // Prepare consideration of microaggregation
         this.microaggregationFunctions = manager.getMicroaggregationFunctions();
@@ -116,6 +137,9 @@ public class ProfitabilityProsecutor extends ImplicitPrivacyCriterion {
                 
         // Calculate MaxIL
         this.maxIL = MetricSDNMEntropyBasedInformationLoss.getMaximalEntropyBasedInformationLoss(this.shares, this.microaggregationDomainSizes);
+
+        // Precompute decisions
+        this.decisions = isDecisionTableUsed() ? getDecisions(Math.min(manager.getDataGeneralized().getDataLength() + 1, DECISIONS_MAX_SIZE)) : null;
     }
     
     @Override
@@ -128,17 +152,28 @@ public class ProfitabilityProsecutor extends ImplicitPrivacyCriterion {
         
         double successProbability = getSuccessProbability(entry);
         double adversaryPayoff = (config.getAdversaryGain() * successProbability - config.getAdversaryCost());
-        if (NAIVE_NO_ATTACK && adversaryPayoff >= 0){
+        if (naiveNoAttack && adversaryPayoff >= 0){
             return false;
         }
         
+        // Check whether the decision depends on information loss
+        if (decisions != null && entry.count < decisions.length) {
+            switch (decisions[entry.count]) {
+            case DECISION_ANONYMOUS:
+                return true;
+            case DECISION_NOT_ANONYMOUS:
+                return false;
+            }
+        }
+        
         // Calculate information loss and success probability
         double informationLoss = MetricSDNMEntropyBasedInformationLoss.getEntropyBasedInformationLoss(transformation,
                                                                                                       entry,
                                                                                                       shares,
                                                                                                       this.microaggregationFunctions,
                                                                                                       this.microaggregationStartIndex,
-                                                                                                      maxIL);
+                                                                                                      maxIL,
+                                                                                                      simplified);
         
         double publisherPayoff = riskModel.getExpectedPublisherPayout(informationLoss, successProbability);
         
@@ -169,6 +204,40 @@ public class ProfitabilityProsecutor extends ImplicitPrivacyCriterion {
         return this.config;
     }
 
+    /**
+     * Precomputes decisions for all classes with a size smaller than the given value. The publisher's
+     * payout decreases with information loss, which is in [0, 1]. Hence, a class of a given size is
+     * never anonymous if the payout is not positive for a loss of 0 and always anonymous if the payout
+     * is positive for a loss of 1. The same expressions as in isAnonymous() are used, which means that
+     * results are exact.
+     * @param size
+     * @return
+     */
+    private byte[] getDecisions(int size) {
+        byte[] result = new byte[size];
+        for (int count = 1; count < size; count++) {
+            double successProbability = 1d / count;
+            if (riskModel.getExpectedPublisherPayout(0d, successProbability) <= 0) {
+                result[count] = DECISION_NOT_ANONYMOUS;
+            } else if (riskModel.getExpectedPublisherPayout(1d, successProbability) > 0) {
+                result[count] = DECISION_ANONYMOUS;
+            } else {
+                result[count] = DECISION_UNKNOWN;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether decisions for classes of a given size are precomputed in initialize() and
+     * used in isAnonymous(). Subclasses which override isAnonymous() without using the table
+     * should return false.
+     * @return
+     */
+    protected boolean isDecisionTableUsed() {
+        return true;
+    }
+
     /**
      * Returns the success probability. If the game is configured to use the journalist risk, 
      * but no population table is available, we silently default to the prosecutor model.
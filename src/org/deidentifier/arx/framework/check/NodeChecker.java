@@ -17,6 +17,8 @@
 
 package org.deidentifier.arx.framework.check;
 
+import java.util.Arrays;
+
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.ARXConfiguration.ARXConfigurationInternal;
 import org.deidentifier.arx.framework.check.StateMachine.Transition;
@@ -24,6 +26,7 @@ import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFu
 import org.deidentifier.arx.framework.check.distribution.IntArrayDictionary;
 import org.deidentifier.arx.framework.check.groupify.HashGroupify;
 import org.deidentifier.arx.framework.check.history.History;
+import org.deidentifier.arx.framework.check.history.History.StorageStrategy;
 import org.deidentifier.arx.framework.data.Data;
 import org.deidentifier.arx.framework.data.DataManager;
 import org.deidentifier.arx.framework.data.Dictionary;
@@ -42,22 +45,51 @@ import org.deidentifier.arx.metric.v2.MetricSDNMPublisherPayout;
  */
 public class NodeChecker {
 
+    /** Number of transitions after which the storage strategy of the history is reconsidered */
+    private static final int    HISTORY_ADAPTION_WINDOW  = 64;
+
+    /** Below this hit rate, the storage of snapshots is restricted further */
+    private static final double HISTORY_MIN_HIT_RATE     = 0.05d;
+
+    /** Above this hit rate, a restriction of the storage of snapshots is lifted again */
+    private static final double HISTORY_RESTORE_HIT_RATE = 0.10d;
+
+    /** Number of windows after which a restriction is lifted to probe the hit rate */
+    private static final int    HISTORY_PROBE_INTERVAL   = 8;
+
+    /**
+     * Restrictions of the storage of snapshots, applied by an adaptive history
+     */
+    private static enum HistoryRestriction {
+        
+        /** The storage strategy requested by the algorithm is used */
+        NONE,
+        
+        /** Only snapshots of transformations which are not anonymous are stored */
+        NON_ANONYMOUS,
+        
+        /** No snapshots are stored. Snapshots stored before are still used. */
+        DISABLED
+    }
+
     /**
-     * The result of a check.
+     * The result of a check. Instances returned by {@link NodeChecker#check(Transformation)}
+     * are reused by the checker and are only valid until the next check. Use {@link #copy()}
+     * to retain a result.
      */
     public static class Result {
         
         /** Overall anonymity. */
-        public final Boolean privacyModelFulfilled;
+        public Boolean            privacyModelFulfilled;
         
         /** k-Anonymity sub-criterion. */
-        public final Boolean minimalClassSizeFulfilled;
+        public Boolean            minimalClassSizeFulfilled;
         
         /** Information loss. */
-        public final InformationLoss<?> informationLoss;
+        public InformationLoss<?> informationLoss;
         
         /** Lower bound. */
-        public final InformationLoss<?> lowerBound;
+        public InformationLoss<?> lowerBound;
 
         /**
          * Creates a new instance.
@@ -71,6 +103,29 @@ public class NodeChecker {
                Boolean minimalClassSizeFulfilled,
                InformationLoss<?> infoLoss,
                InformationLoss<?> lowerBound) {
+            set(privacyModelFulfilled, minimalClassSizeFulfilled, infoLoss, lowerBound);
+        }
+
+        /**
+         * Returns a copy of this result, which is not affected by subsequent checks
+         * @return
+         */
+        public Result copy() {
+            return new Result(privacyModelFulfilled, minimalClassSizeFulfilled, informationLoss, lowerBound);
+        }
+
+        /**
+         * Updates this instance.
+         * 
+         * @param privacyModelFulfilled
+         * @param minimalClassSizeFulfilled
+         * @param infoLoss
+         * @param lowerBound
+         */
+        void set(Boolean privacyModelFulfilled,
+                 Boolean minimalClassSizeFulfilled,
+                 InformationLoss<?> infoLoss,
+                 InformationLoss<?> lowerBound) {
             this.privacyModelFulfilled = privacyModelFulfilled;
             this.minimalClassSizeFulfilled = minimalClassSizeFulfilled;
             this.informationLoss = infoLoss;
@@ -117,19 +172,85 @@ public class NodeChecker {
     /** The data transformer. */
     private final Transformer                     transformer;
 
+    /** The data manager */
+    private final DataManager                     manager;
+
+    /** The data transformer for evaluations, created on demand */
+    private Transformer                           evaluationTransformer;
+
+    /** The hash groupify for evaluations, created on demand */
+    private HashGroupify                          evaluationGroupify;
+
     /** The solution space */
     private final SolutionSpace                   solutionSpace;
 
     /** Is a minimal class size required */
     private final boolean                         minimalClassSizeRequired;
 
+    /** The result of the last check, reused to prevent allocations */
+    private final Result                          checkResult;
+
+    /** The history max size, as passed to the constructor */
+    private final int                             historyMaxSize;
+
+    /** A history threshold */
+    private final double                          snapshotSizeDataset;
+
+    /** A history threshold */
+    private final double                          snapshotSizeSnapshot;
+
+    /** Statistics */
+    private final NodeCheckerStatistics           statistics;
+
+    /** Is the storage strategy of the history adjusted at runtime */
+    private final boolean                         historyAdaptive;
+
+    /** The storage strategy requested by the algorithm */
+    private StorageStrategy                       storageStrategyRequested = StorageStrategy.NON_ANONYMOUS;
+
+    /** The restriction currently applied to the history */
+    private HistoryRestriction                    historyRestriction       = HistoryRestriction.NONE;
+
+    /** Number of snapshot transitions in the current window */
+    private int                                   windowSnapshots          = 0;
+
+    /** Number of unoptimized transitions in the current window */
+    private int                                   windowUnoptimized        = 0;
+
+    /** Number of windows for which the storage strategy has been restricted */
+    private int                                   windowsRestricted        = 0;
+
+    /** Cache for results of checks, if any */
+    private final TransformationCache             cache;
+
+    /** Trace of the search, if any */
+    private final SearchTrace                     trace;
+
+    /** Secondary quality models */
+    private final Metric<?>[]                     secondaryMetrics;
+
+    /** Information loss of the optimum of each secondary quality model */
+    private final InformationLoss<?>[]            secondaryLosses;
+
+    /** Identifier of the optimum of each secondary quality model */
+    private final long[]                          secondaryOptima;
+
+    /** Evaluates threshold models, if any */
+    private final ThresholdEvaluator              thresholds;
+
+    /** Information loss of the optimum of each threshold model and quality model */
+    private final InformationLoss<?>[][]          thresholdLosses;
+
+    /** Identifier of the optimum of each threshold model and quality model */
+    private final long[][]                        thresholdOptima;
+
     /**
      * Creates a new NodeChecker instance.
      * 
      * @param manager The manager
      * @param metric The metric
      * @param config The configuration
-     * @param historyMaxSize The history max size
+     * @param historyMaxSize The history max size, which may be reduced to adhere to the memory limit of the configuration
      * @param snapshotSizeDataset A history threshold
      * @param snapshotSizeSnapshot A history threshold
      * @param solutionSpace
@@ -143,6 +264,7 @@ public class NodeChecker {
                        final SolutionSpace solutionSpace) {
         
         // Initialize all operators
+        this.manager = manager;
         this.metric = metric;
         this.config = config;
         this.dataGeneralized = manager.getDataGeneralized();
@@ -153,6 +275,10 @@ public class NodeChecker {
         this.microaggregationHeader = manager.getMicroaggregationHeader();
         this.solutionSpace = solutionSpace;
         this.minimalClassSizeRequired = config.getMinimalGroupSize() != Integer.MAX_VALUE;
+        this.checkResult = new Result(null, null, null, null);
+        this.historyMaxSize = historyMaxSize;
+        this.snapshotSizeDataset = snapshotSizeDataset;
+        this.snapshotSizeSnapshot = snapshotSizeSnapshot;
         
         int initialSize = (int) (manager.getDataGeneralized().getDataLength() * 0.01d);
         IntArrayDictionary dictionarySensValue;
@@ -166,8 +292,26 @@ public class NodeChecker {
             dictionarySensFreq = new IntArrayDictionary(0);
         }
         
-        this.history = new History(manager.getDataGeneralized().getArray().length,
-                                   historyMaxSize,
+        // Size history
+        int rows = manager.getDataGeneralized().getArray().length;
+        int historySize = getHistorySize(rows, historyMaxSize, snapshotSizeDataset, config);
+        this.statistics = new NodeCheckerStatistics(historySize);
+        this.historyAdaptive = config.isHistoryAdaptive();
+        this.secondaryMetrics = config.getSecondaryQualityModels().toArray(new Metric<?>[0]);
+        this.secondaryLosses = new InformationLoss<?>[secondaryMetrics.length];
+        this.secondaryOptima = new long[secondaryMetrics.length];
+        Arrays.fill(this.secondaryOptima, -1L);
+        this.thresholds = config.getThresholdModels().isEmpty() ? null : new ThresholdEvaluator(config.getThresholdModels(), config.getAbsoluteMaxOutliers());
+        this.thresholdLosses = new InformationLoss<?>[config.getThresholdModels().size()][secondaryMetrics.length + 1];
+        this.thresholdOptima = new long[config.getThresholdModels().size()][secondaryMetrics.length + 1];
+        for (long[] optima : this.thresholdOptima) {
+            Arrays.fill(optima, -1L);
+        }
+        this.cache = config.isTransformationCacheEnabled() && !config.isExhaustiveSearchRequired() ? TransformationCache.create(manager, metric, config) : null;
+        this.trace = config.getSearchTraceSize() > 0 ? new SearchTrace(config.getSearchTraceSize()) : null;
+        
+        this.history = new History(rows,
+                                   historySize,
                                    snapshotSizeDataset,
                                    snapshotSizeSnapshot,
                                    config,
@@ -218,7 +362,7 @@ public class NodeChecker {
         
         // Determine information loss
         InformationLoss<?> loss = transformation.getInformationLoss();
-        if (loss == null || MetricSDNMPublisherPayout.USE_CENSUS_DATA) {
+        if (loss == null || isCensusDataEnabled()) {
             loss = metric.getInformationLoss(transformation, currentGroupify).getInformationLoss();
         }
         
@@ -250,7 +394,66 @@ public class NodeChecker {
     }
     
     /**
-     * Checks the given transformation, computes the utility if it fulfills the privacy model
+     * Evaluates the given transformation with the given metric, which must have been initialized
+     * for the data of this checker. The data is transformed as in applyTransformation(), but no
+     * output is produced.
+     * @param transformation
+     * @param metric
+     * @return
+     */
+    public InformationLoss<?> getInformationLoss(final Transformation transformation, final Metric<?> metric) {
+        return getInformationLoss(transformation, metric, -1);
+    }
+
+    /**
+     * Evaluates the given transformation with the given metric, which must have been initialized
+     * for the data of this checker, with suppression performed as required by the given threshold model.
+     * The data is transformed by a separate transformer, which does not affect the state of the search
+     * or the buffer returned by applyTransformation(). It is created on first use and requires memory
+     * for a further copy of the data.
+     * @param transformation
+     * @param metric
+     * @param threshold Index of the threshold model in the configuration, -1 for the privacy models
+     * @return
+     */
+    public InformationLoss<?> getInformationLoss(final Transformation transformation, final Metric<?> metric, final int threshold) {
+        
+        // Prepare
+        if (evaluationTransformer == null) {
+            int initialSize = (int) (manager.getDataGeneralized().getDataLength() * 0.01d);
+            int dictionarySize = (config.getRequirements() & ARXConfiguration.REQUIREMENT_DISTRIBUTION) != 0 ? initialSize : 0;
+            evaluationGroupify = new HashGroupify(initialSize, config);
+            evaluationTransformer = new Transformer(manager.getDataGeneralized().getArray(),
+                                                    manager.getDataAnalyzed().getArray(),
+                                                    manager.getHierarchies(),
+                                                    config,
+                                                    new IntArrayDictionary(dictionarySize),
+                                                    new IntArrayDictionary(dictionarySize));
+        }
+        
+        // Apply transition and groupify
+        evaluationGroupify = evaluationTransformer.apply(0L, transformation.getGeneralization(), evaluationGroupify);
+        evaluationGroupify.stateAnalyze(transformation, true);
+        if (!evaluationGroupify.isPrivacyModelFulfilled() && !config.isSuppressionAlwaysEnabled()) {
+            evaluationGroupify.stateResetSuppression();
+        }
+        
+        // Determine information loss
+        if (threshold == -1) {
+            return metric.getInformationLoss(transformation, evaluationGroupify).getInformationLoss();
+        }
+        thresholds.export(evaluationGroupify);
+        try {
+            thresholds.apply(threshold);
+            return metric.getInformationLoss(transformation, evaluationGroupify).getInformationLoss();
+        } finally {
+            thresholds.restore();
+        }
+    }
+    
+    /**
+     * Checks the given transformation, computes the utility if it fulfills the privacy model.
+     * The returned object is reused by subsequent checks.
      * @param node
      * @return
      */
@@ -259,7 +462,7 @@ public class NodeChecker {
     }
     
     /**
-     * Checks the given transformation
+     * Checks the given transformation. The returned object is reused by subsequent checks.
      * @param node
      * @param forceMeasureInfoLoss
      * @return
@@ -271,8 +474,45 @@ public class NodeChecker {
             return (NodeChecker.Result) node.getData();
         }
         
+        // Check
+        return recheck(node, forceMeasureInfoLoss);
+    }
+
+    /**
+     * Creates a new checker for the same data, quality model and solution space with the given
+     * configuration. The new instance starts with an empty history.
+     * @param manager The manager of the data of this checker
+     * @param config
+     * @return
+     */
+    public NodeChecker createInstance(DataManager manager, ARXConfigurationInternal config) {
+        return new NodeChecker(manager,
+                               metric,
+                               config,
+                               historyMaxSize,
+                               snapshotSizeDataset,
+                               snapshotSizeSnapshot,
+                               solutionSpace);
+    }
+
+    /**
+     * Checks the given transformation, even if a result is already known for it. The returned
+     * object is reused by subsequent checks.
+     * @param node
+     * @param forceMeasureInfoLoss
+     * @return
+     */
+    public NodeChecker.Result recheck(final Transformation node, final boolean forceMeasureInfoLoss) {
+        
+        // If the result has been computed before, reuse it
+        statistics.trackCheck();
+        if (cache != null && cache.get(node.getGeneralization(), forceMeasureInfoLoss, checkResult)) {
+            statistics.trackCacheHit();
+            return checkResult;
+        }
+        
         // Store snapshot from last check
-        if (stateMachine.getLastNode() != null) {
+        if (stateMachine.getLastNode() != null && historyRestriction != HistoryRestriction.DISABLED) {
             history.store(solutionSpace.getTransformation(stateMachine.getLastNode()), currentGroupify, stateMachine.getLastTransition().snapshot);
         }
         
@@ -285,35 +525,68 @@ public class NodeChecker {
         currentGroupify = temp;
         
         // Apply transition
+        long time = System.nanoTime();
         switch (transition.type) {
         case UNOPTIMIZED:
             currentGroupify = transformer.apply(transition.projection, node.getGeneralization(), currentGroupify);
+            statistics.trackUnoptimized();
+            windowUnoptimized++;
             break;
         case ROLLUP:
             currentGroupify = transformer.applyRollup(transition.projection, node.getGeneralization(), lastGroupify, currentGroupify);
+            statistics.trackRollup();
             break;
         case SNAPSHOT:
             currentGroupify = transformer.applySnapshot(transition.projection, node.getGeneralization(), currentGroupify, transition.snapshot);
+            statistics.trackSnapshot();
+            windowSnapshots++;
             break;
         }
+        statistics.trackTimeTransform(System.nanoTime() - time);
+        
+        // Adjust history
+        if (historyAdaptive && windowSnapshots + windowUnoptimized >= HISTORY_ADAPTION_WINDOW) {
+            adaptHistory();
+        }
         
         // We are done with transforming and adding
+        time = System.nanoTime();
         currentGroupify.stateAnalyze(node, forceMeasureInfoLoss);
         if (forceMeasureInfoLoss && !currentGroupify.isPrivacyModelFulfilled() && !config.isSuppressionAlwaysEnabled()) {
             currentGroupify.stateResetSuppression();
         }
+        statistics.trackTimeAnalyze(System.nanoTime() - time);
+        statistics.trackClasses(currentGroupify.getNumberOfEquivalenceClasses());
         
         // Compute information loss and lower bound
+        time = System.nanoTime();
         InformationLossWithBound<?> result = (currentGroupify.isPrivacyModelFulfilled() || forceMeasureInfoLoss) ?
                 metric.getInformationLoss(node, currentGroupify) : null;
         InformationLoss<?> loss = result != null ? result.getInformationLoss() : null;
         InformationLoss<?> bound = result != null ? result.getLowerBound() : metric.getLowerBound(node, currentGroupify);
+        if (currentGroupify.isPrivacyModelFulfilled()) {
+            for (int i = 0; i < secondaryMetrics.length; i++) {
+                InformationLoss<?> secondary = secondaryMetrics[i].getInformationLoss(node, currentGroupify).getInformationLoss();
+                if (secondaryLosses[i] == null || secondary.compareTo(secondaryLosses[i]) < 0) {
+                    secondaryLosses[i] = secondary;
+                    secondaryOptima[i] = node.getIdentifier();
+                }
+            }
+        }
+        if (thresholds != null) {
+            checkThresholds(node);
+        }
+        statistics.trackTimeMetric(System.nanoTime() - time);
         
         // Return result;
-        return new NodeChecker.Result(currentGroupify.isPrivacyModelFulfilled(),
-                                      minimalClassSizeRequired ? currentGroupify.isMinimalClassSizeFulfilled() : null,
-                                      loss,
-                                      bound);
+        checkResult.set(currentGroupify.isPrivacyModelFulfilled(),
+                        minimalClassSizeRequired ? currentGroupify.isMinimalClassSizeFulfilled() : null,
+                        loss,
+                        bound);
+        if (cache != null) {
+            cache.put(node.getGeneralization(), forceMeasureInfoLoss, checkResult);
+        }
+        return checkResult;
     }
     
     /**
@@ -348,4 +621,168 @@ public class NodeChecker {
     public Metric<?> getMetric() {
         return metric;
     }
+
+    /**
+     * Returns the information loss of the optimum of the given secondary quality model, null if no
+     * transformation fulfilling the privacy model has been checked
+     * @param index Index of the model in the configuration
+     * @return
+     */
+    public InformationLoss<?> getSecondaryInformationLoss(int index) {
+        return secondaryLosses[index];
+    }
+
+    /**
+     * Returns the identifier of the optimum of the given secondary quality model, -1 if no
+     * transformation fulfilling the privacy model has been checked
+     * @param index Index of the model in the configuration
+     * @return
+     */
+    public long getSecondaryOptimum(int index) {
+        return secondaryOptima[index];
+    }
+
+    /**
+     * Returns the information loss of the optimum of the given threshold model and quality model, null
+     * if the threshold model is not fulfilled by any transformation that has been checked
+     * @param threshold Index of the threshold model in the configuration
+     * @param metric Index of the quality model, 0 for the primary model, i + 1 for the i-th secondary model
+     * @return
+     */
+    public InformationLoss<?> getThresholdInformationLoss(int threshold, int metric) {
+        return thresholdLosses[threshold][metric];
+    }
+
+    /**
+     * Returns the identifier of the optimum of the given threshold model and quality model, -1
+     * if the threshold model is not fulfilled by any transformation that has been checked
+     * @param threshold Index of the threshold model in the configuration
+     * @param metric Index of the quality model, 0 for the primary model, i + 1 for the i-th secondary model
+     * @return
+     */
+    public long getThresholdOptimum(int threshold, int metric) {
+        return thresholdOptima[threshold][metric];
+    }
+
+    /**
+     * Returns statistics about this checker
+     * @return
+     */
+    public NodeCheckerStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the trace of the search, null if no trace is recorded
+     * @return
+     */
+    public SearchTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Returns whether the quality model currently derives success probabilities from census data. In this
+     * case, information loss must be recomputed when the output of a transformation is requested.
+     * @return
+     */
+    public boolean isCensusDataEnabled() {
+        return metric instanceof MetricSDNMPublisherPayout && ((MetricSDNMPublisherPayout) metric).isCensusDataEnabled();
+    }
+
+    /**
+     * Sets the storage strategy of the history. If the history is adaptive, the storage of
+     * snapshots may temporarily be restricted to non-anonymous transformations or disabled.
+     * @param strategy
+     */
+    public void setStorageStrategy(StorageStrategy strategy) {
+        this.storageStrategyRequested = strategy;
+        this.historyRestriction = HistoryRestriction.NONE;
+        this.windowsRestricted = 0;
+        this.history.setStorageStrategy(strategy);
+    }
+
+    /**
+     * Reconsiders the storage of snapshots based on the hit rate observed in the last window.
+     * If only few transitions can be served from snapshots, storing them is not worth its costs.
+     * The storage is then first restricted to non-anonymous transformations and then disabled.
+     * The size of the history is fixed when the checker is created, as it cannot be changed
+     * at runtime. As fewer snapshots are stored while the storage is restricted, the hit rate
+     * observed during that time is biased. Restrictions are therefore lifted above a higher
+     * threshold, and periodically for one window to probe whether the hit rate has recovered.
+     */
+    private void adaptHistory() {
+        
+        // Determine restriction
+        double hitRate = (double) windowSnapshots / (double) (windowSnapshots + windowUnoptimized);
+        HistoryRestriction restriction = historyRestriction;
+        if (restriction != HistoryRestriction.NONE && hitRate >= HISTORY_RESTORE_HIT_RATE) {
+            restriction = HistoryRestriction.NONE;
+        } else if (restriction != HistoryRestriction.DISABLED && hitRate < HISTORY_MIN_HIT_RATE) {
+            restriction = restriction == HistoryRestriction.NONE && storageStrategyRequested != StorageStrategy.NON_ANONYMOUS ? 
+                          HistoryRestriction.NON_ANONYMOUS : HistoryRestriction.DISABLED;
+        } else if (restriction != HistoryRestriction.NONE && ++windowsRestricted >= HISTORY_PROBE_INTERVAL) {
+            restriction = HistoryRestriction.NONE;
+            statistics.trackStorageStrategyProbe();
+        }
+        
+        // Apply
+        if (restriction != historyRestriction) {
+            history.setStorageStrategy(restriction == HistoryRestriction.NONE ? storageStrategyRequested : StorageStrategy.NON_ANONYMOUS);
+            historyRestriction = restriction;
+            windowsRestricted = 0;
+            statistics.trackStorageStrategyChange();
+        }
+        
+        // Reset window
+        windowSnapshots = 0;
+        windowUnoptimized = 0;
+    }
+
+    /**
+     * Evaluates all threshold models on the current groupify operator and updates their optima
+     * @param node
+     */
+    private void checkThresholds(Transformation node) {
+        thresholds.export(currentGroupify);
+        try {
+            for (int i = 0; i < thresholds.getNumberOfModels(); i++) {
+                if (thresholds.apply(i)) {
+                    for (int j = 0; j < secondaryMetrics.length + 1; j++) {
+                        Metric<?> metric = j == 0 ? this.metric : secondaryMetrics[j - 1];
+                        InformationLoss<?> loss = metric.getInformationLoss(node, currentGroupify).getInformationLoss();
+                        if (thresholdLosses[i][j] == null || loss.compareTo(thresholdLosses[i][j]) < 0) {
+                            thresholdLosses[i][j] = loss;
+                            thresholdOptima[i][j] = node.getIdentifier();
+                        }
+                    }
+                }
+            }
+        } finally {
+            thresholds.restore();
+        }
+    }
+
+    /**
+     * Returns the maximal number of snapshots, such that the history adheres to the memory limit
+     * @param rows
+     * @param historyMaxSize
+     * @param snapshotSizeDataset
+     * @param config
+     * @return
+     */
+    private int getHistorySize(int rows, int historyMaxSize, double snapshotSizeDataset, ARXConfigurationInternal config) {
+        
+        // No limit
+        long limit = config.getHistoryMemoryLimit();
+        if (limit == Long.MAX_VALUE) {
+            return historyMaxSize;
+        }
+        
+        // Upper bound for the size of a snapshot in bytes
+        long bytesPerSnapshot = (long) Math.ceil(snapshotSizeDataset * rows) * config.getSnapshotLength() * 4L;
+        if (bytesPerSnapshot <= 0) {
+            return historyMaxSize;
+        }
+        return (int) Math.min(historyMaxSize, limit / bytesPerSnapshot);
+    }
 }
@@ -0,0 +1,447 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+/**
+ * Statistics collected by a node checker and the search algorithm during one run.
+ * A run is executed by a single thread, so plain counters are sufficient. Skipped
+ * transformations are counted once, for the first reason for which they have been skipped.
+ */
+public class NodeCheckerStatistics {
+
+    /** Number of buckets of the histogram of class counts */
+    private static final int BUCKETS = 32;
+
+    /** Number of checks */
+    private long             checks;
+
+    /** Number of checks answered by the transformation cache */
+    private long             cacheHits;
+
+    /** Number of transformations evaluated without checking */
+    private long             evaluations;
+
+    /** Number of transitions of type rollup */
+    private long             rollups;
+
+    /** Number of transitions of type snapshot */
+    private long             snapshots;
+
+    /** Number of transitions of type unoptimized */
+    private long             unoptimized;
+
+    /** Number of changes of the storage strategy, including disabling and enabling the storage of snapshots */
+    private long             strategyChanges;
+
+    /** Number of times a restriction of the storage of snapshots has been lifted to probe the hit rate */
+    private long             strategyProbes;
+
+    /** The maximal number of snapshots in the history */
+    private int              historySize;
+
+    /** Nodes skipped, because the trigger applied */
+    private long             skippedByTrigger;
+
+    /** Nodes skipped, because they were known to have insufficient utility */
+    private long             skippedByUtility;
+
+    /** Nodes skipped, because of their lower bound */
+    private long             skippedByLowerBound;
+
+    /** Nodes pruned, because of their lower bound */
+    private long             prunedByLowerBound;
+
+    /** Time spent in the transformer, in nanoseconds */
+    private long             timeTransform;
+
+    /** Time spent analyzing the groupify, in nanoseconds */
+    private long             timeAnalyze;
+
+    /** Time spent evaluating the metric, in nanoseconds */
+    private long             timeMetric;
+
+    /** Sum of the number of equivalence classes over all checks */
+    private long             classesSum;
+
+    /** Maximal number of equivalence classes */
+    private long             classesMax;
+
+    /** Histogram of the number of equivalence classes, bucket i contains counts in [2^i, 2^(i+1)) */
+    private final long[]     classesHistogram = new long[BUCKETS];
+
+    /**
+     * Creates a new instance
+     * @param historySize
+     */
+    NodeCheckerStatistics(int historySize) {
+        this.historySize = historySize;
+    }
+
+    /**
+     * Returns the average number of equivalence classes per check
+     * @return
+     */
+    public double getAverageNumberOfClasses() {
+        long computed = checks - cacheHits;
+        return computed == 0 ? 0d : (double) classesSum / (double) computed;
+    }
+
+    /**
+     * Returns a histogram of the number of equivalence classes per check. Bucket i contains
+     * the number of checks that resulted in [2^i, 2^(i+1)) classes, bucket 0 also contains
+     * checks without classes.
+     * @return
+     */
+    public long[] getClassHistogram() {
+        return classesHistogram.clone();
+    }
+
+    /**
+     * Returns the maximal number of snapshots in the history, after applying the memory limit
+     * @return
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Returns the maximal number of equivalence classes in a check
+     * @return
+     */
+    public long getMaximalNumberOfClasses() {
+        return classesMax;
+    }
+
+    /**
+     * Returns the number of checks answered by the transformation cache
+     * @return
+     */
+    public long getNumberOfCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the number of checks
+     * @return
+     */
+    public long getNumberOfChecks() {
+        return checks;
+    }
+
+    /**
+     * Returns the number of transformations that were evaluated without checking
+     * @return
+     */
+    public long getNumberOfEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Returns the number of transformations pruned based on their lower bound
+     * @return
+     */
+    public long getNumberOfPrunedByLowerBound() {
+        return prunedByLowerBound;
+    }
+
+    /**
+     * Returns the number of rollups
+     * @return
+     */
+    public long getNumberOfRollups() {
+        return rollups;
+    }
+
+    /**
+     * Returns the number of transformations skipped based on their lower bound
+     * @return
+     */
+    public long getNumberOfSkippedByLowerBound() {
+        return skippedByLowerBound;
+    }
+
+    /**
+     * Returns the number of transformations skipped because the skip trigger applied
+     * @return
+     */
+    public long getNumberOfSkippedByTrigger() {
+        return skippedByTrigger;
+    }
+
+    /**
+     * Returns the number of transformations skipped because they were known to have insufficient utility
+     * @return
+     */
+    public long getNumberOfSkippedByUtility() {
+        return skippedByUtility;
+    }
+
+    /**
+     * Returns the number of transitions that were based on a snapshot
+     * @return
+     */
+    public long getNumberOfSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Returns how often the storage of snapshots in the history has been adjusted
+     * @return
+     */
+    public long getNumberOfStorageStrategyChanges() {
+        return strategyChanges;
+    }
+
+    /**
+     * Returns how often a restriction of the storage of snapshots has been lifted to probe the hit rate
+     * @return
+     */
+    public long getNumberOfStorageStrategyProbes() {
+        return strategyProbes;
+    }
+
+    /**
+     * Returns the overall number of transitions
+     * @return
+     */
+    public long getNumberOfTransitions() {
+        return rollups + snapshots + unoptimized;
+    }
+
+    /**
+     * Returns the number of transitions which had to be performed on the input dataset
+     * @return
+     */
+    public long getNumberOfUnoptimized() {
+        return unoptimized;
+    }
+
+    /**
+     * Returns the fraction of transitions that were served by the history, i.e.
+     * snapshots / (snapshots + unoptimized)
+     * @return
+     */
+    public double getSnapshotHitRate() {
+        long total = snapshots + unoptimized;
+        return total == 0 ? 0d : (double) snapshots / (double) total;
+    }
+
+    /**
+     * Returns the time spent analyzing groupified data, i.e. evaluating privacy models, in nanoseconds
+     * @return
+     */
+    public long getTimeAnalyze() {
+        return timeAnalyze;
+    }
+
+    /**
+     * Returns the time spent evaluating the quality model, in nanoseconds
+     * @return
+     */
+    public long getTimeMetric() {
+        return timeMetric;
+    }
+
+    /**
+     * Returns the time spent transforming and groupifying data, in nanoseconds
+     * @return
+     */
+    public long getTimeTransform() {
+        return timeTransform;
+    }
+
+    /**
+     * Returns a JSON representation of the statistics
+     * @return
+     */
+    public String toJSON() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\n");
+        append(builder, "checks", checks);
+        append(builder, "cacheHits", cacheHits);
+        append(builder, "evaluations", evaluations);
+        append(builder, "skippedByTrigger", skippedByTrigger);
+        append(builder, "skippedByUtility", skippedByUtility);
+        append(builder, "skippedByLowerBound", skippedByLowerBound);
+        append(builder, "prunedByLowerBound", prunedByLowerBound);
+        append(builder, "rollups", rollups);
+        append(builder, "snapshots", snapshots);
+        append(builder, "unoptimized", unoptimized);
+        append(builder, "snapshotHitRate", getSnapshotHitRate());
+        append(builder, "historySize", historySize);
+        append(builder, "strategyChanges", strategyChanges);
+        append(builder, "strategyProbes", strategyProbes);
+        append(builder, "timeTransformNanos", timeTransform);
+        append(builder, "timeAnalyzeNanos", timeAnalyze);
+        append(builder, "timeMetricNanos", timeMetric);
+        append(builder, "classesAverage", getAverageNumberOfClasses());
+        append(builder, "classesMax", classesMax);
+        builder.append("  \"classesHistogram\": [");
+        for (int i = 0; i < classesHistogram.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(classesHistogram[i]);
+        }
+        builder.append("]\n}");
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("NodeCheckerStatistics [");
+        builder.append("checks=").append(checks);
+        builder.append(", cacheHits=").append(cacheHits);
+        builder.append(", rollups=").append(rollups);
+        builder.append(", snapshots=").append(snapshots);
+        builder.append(", unoptimized=").append(unoptimized);
+        builder.append(", snapshotHitRate=").append(getSnapshotHitRate());
+        builder.append(", historySize=").append(historySize);
+        builder.append(", strategyChanges=").append(strategyChanges);
+        builder.append(", strategyProbes=").append(strategyProbes);
+        builder.append("]");
+        return builder.toString();
+    }
+
+    /**
+     * Tracks a check answered by the cache
+     */
+    void trackCacheHit() {
+        cacheHits++;
+    }
+
+    /**
+     * Tracks a check
+     */
+    void trackCheck() {
+        checks++;
+    }
+
+    /**
+     * Tracks the number of equivalence classes of a check
+     * @param classes
+     */
+    void trackClasses(int classes) {
+        classesSum += classes;
+        classesMax = Math.max(classesMax, classes);
+        int bucket = classes <= 1 ? 0 : 31 - Integer.numberOfLeadingZeros(classes);
+        classesHistogram[bucket]++;
+    }
+
+    /**
+     * Tracks an evaluation without check
+     */
+    public void trackEvaluation() {
+        evaluations++;
+    }
+
+    /**
+     * Tracks a transformation pruned based on its lower bound
+     */
+    public void trackPrunedByLowerBound() {
+        prunedByLowerBound++;
+    }
+
+    /**
+     * Tracks a rollup
+     */
+    void trackRollup() {
+        rollups++;
+    }
+
+    /**
+     * Tracks a transformation skipped based on its lower bound
+     */
+    public void trackSkippedByLowerBound() {
+        skippedByLowerBound++;
+    }
+
+    /**
+     * Tracks a transformation skipped because the trigger applied
+     */
+    public void trackSkippedByTrigger() {
+        skippedByTrigger++;
+    }
+
+    /**
+     * Tracks a transformation skipped because it is known to have insufficient utility
+     */
+    public void trackSkippedByUtility() {
+        skippedByUtility++;
+    }
+
+    /**
+     * Tracks a snapshot
+     */
+    void trackSnapshot() {
+        snapshots++;
+    }
+
+    /**
+     * Tracks a change of the storage strategy
+     */
+    void trackStorageStrategyChange() {
+        strategyChanges++;
+    }
+
+    /**
+     * Tracks a probe of the storage strategy
+     */
+    void trackStorageStrategyProbe() {
+        strategyProbes++;
+    }
+
+    /**
+     * Tracks time spent analyzing
+     * @param nanos
+     */
+    void trackTimeAnalyze(long nanos) {
+        timeAnalyze += nanos;
+    }
+
+    /**
+     * Tracks time spent evaluating the metric
+     * @param nanos
+     */
+    void trackTimeMetric(long nanos) {
+        timeMetric += nanos;
+    }
+
+    /**
+     * Tracks time spent transforming
+     * @param nanos
+     */
+    void trackTimeTransform(long nanos) {
+        timeTransform += nanos;
+    }
+
+    /**
+     * Tracks an unoptimized transition
+     */
+    void trackUnoptimized() {
+        unoptimized++;
+    }
+
+    /**
+     * Appends a JSON field
+     * @param builder
+     * @param name
+     * @param value
+     */
+    private void append(StringBuilder builder, String name, Object value) {
+        builder.append("  \"").append(name).append("\": ").append(value).append(",\n");
+    }
+}
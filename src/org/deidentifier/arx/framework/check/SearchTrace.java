@@ -0,0 +1,386 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.deidentifier.arx.framework.lattice.SolutionSpace;
+import org.deidentifier.arx.framework.lattice.Transformation;
+import org.deidentifier.arx.metric.InformationLoss;
+
+/**
+ * A trace of the events that occurred while traversing the solution space. Events are
+ * stored in a ring buffer of primitive arrays with a fixed capacity, which means that
+ * recording does not allocate memory and that only the most recent events are retained.
+ * Information loss is recorded for single-dimensional quality models only, NaN otherwise.
+ */
+public class SearchTrace {
+
+    /** Event: the transformation has been checked */
+    public static final byte  EVENT_CHECK          = 0;
+
+    /** Event: the information loss of the transformation has been evaluated without checking */
+    public static final byte  EVENT_EVALUATE       = 1;
+
+    /** Event: the transformation has only been tagged */
+    public static final byte  EVENT_TAG            = 2;
+
+    /** Event: the transformation has been pruned based on its lower bound */
+    public static final byte  EVENT_PRUNE          = 3;
+
+    /** Event: the transformation has been skipped based on its lower bound */
+    public static final byte  EVENT_SKIP           = 4;
+
+    /** Flag: the transformation fulfills the privacy model */
+    public static final byte  FLAG_ANONYMOUS       = 1;
+
+    /** Flag: the transformation fulfills the minimal class size */
+    public static final byte  FLAG_K_ANONYMOUS     = 2;
+
+    /** Phase: binary search */
+    public static final byte  PHASE_BINARY         = 0;
+
+    /** Phase: linear search */
+    public static final byte  PHASE_LINEAR         = 1;
+
+    /** Magic number of the file format */
+    private static final int  MAGIC                = 0x41525854;
+
+    /** Relative tolerance when comparing information loss */
+    private static final double LOSS_TOLERANCE     = 1e-9;
+
+    /**
+     * Reads a trace from the given file
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static SearchTrace read(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a search trace: " + file);
+            }
+            int size = input.readInt();
+            SearchTrace trace = new SearchTrace(Math.max(size, 1));
+            for (int i = 0; i < size; i++) {
+                trace.record(input.readLong(),
+                             input.readByte(),
+                             input.readByte(),
+                             input.readByte(),
+                             input.readDouble(),
+                             input.readDouble());
+            }
+            return trace;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Returns whether the given values of information loss are equal. Undefined values are
+     * considered equal to all values, as the loss is not measured for all transformations.
+     * Small relative differences are tolerated, as they may be caused by aggregating values
+     * of equivalence classes in a different order.
+     * @param recorded
+     * @param measured
+     * @return
+     */
+    private static boolean isEqual(double recorded, double measured) {
+        if (Double.isNaN(recorded) || Double.isNaN(measured)) {
+            return true;
+        }
+        return Math.abs(recorded - measured) <= LOSS_TOLERANCE * Math.max(1d, Math.max(Math.abs(recorded), Math.abs(measured)));
+    }
+
+    /**
+     * Converts information loss into a primitive value
+     * @param loss
+     * @return
+     */
+    private static double toDouble(InformationLoss<?> loss) {
+        if (loss == null) {
+            return Double.NaN;
+        }
+        Object value = loss.getValue();
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+
+    /** Identifiers */
+    private final long[]   identifiers;
+
+    /** Phases */
+    private final byte[]   phases;
+
+    /** Events */
+    private final byte[]   events;
+
+    /** Flags */
+    private final byte[]   flags;
+
+    /** Information loss */
+    private final double[] losses;
+
+    /** Lower bounds */
+    private final double[] bounds;
+
+    /** Number of events recorded */
+    private long           count = 0;
+
+    /**
+     * Creates a new instance
+     * @param capacity
+     */
+    public SearchTrace(int capacity) {
+        if (capacity <= 0) { throw new IllegalArgumentException("Capacity must be > 0"); }
+        this.identifiers = new long[capacity];
+        this.phases = new byte[capacity];
+        this.events = new byte[capacity];
+        this.flags = new byte[capacity];
+        this.losses = new double[capacity];
+        this.bounds = new double[capacity];
+    }
+
+    /**
+     * Returns the lower bound recorded for the given event
+     * @param index
+     * @return
+     */
+    public double getBound(int index) {
+        return bounds[getPosition(index)];
+    }
+
+    /**
+     * Returns the type of the given event
+     * @param index
+     * @return
+     */
+    public byte getEvent(int index) {
+        return events[getPosition(index)];
+    }
+
+    /**
+     * Returns the flags recorded for the given event
+     * @param index
+     * @return
+     */
+    public byte getFlags(int index) {
+        return flags[getPosition(index)];
+    }
+
+    /**
+     * Returns the identifier of the transformation of the given event
+     * @param index
+     * @return
+     */
+    public long getIdentifier(int index) {
+        return identifiers[getPosition(index)];
+    }
+
+    /**
+     * Returns the information loss recorded for the given event
+     * @param index
+     * @return
+     */
+    public double getLoss(int index) {
+        return losses[getPosition(index)];
+    }
+
+    /**
+     * Returns the overall number of events recorded, including events that have been overwritten
+     * @return
+     */
+    public long getNumberOfEvents() {
+        return count;
+    }
+
+    /**
+     * Returns the phase of the given event
+     * @param index
+     * @return
+     */
+    public byte getPhase(int index) {
+        return phases[getPosition(index)];
+    }
+
+    /**
+     * Returns the number of events retained, the oldest event has index 0
+     * @return
+     */
+    public int getSize() {
+        return (int) Math.min(count, identifiers.length);
+    }
+
+    /**
+     * Returns the identifiers of transformations that have been checked in vain, i.e. which have
+     * been pruned or skipped later on, or whose lower bound was already not better than the
+     * information loss of an anonymous transformation checked before. Only retained events are analyzed.
+     * @return
+     */
+    public long[] getWastedChecks() {
+
+        // Collect checks that were followed by pruning
+        int size = getSize();
+        boolean[] wasted = new boolean[size];
+        Set<Long> pruned = new HashSet<Long>();
+        for (int i = size - 1; i >= 0; i--) {
+            byte event = getEvent(i);
+            if (event == EVENT_PRUNE || event == EVENT_SKIP) {
+                pruned.add(getIdentifier(i));
+            } else if (event == EVENT_CHECK && pruned.contains(getIdentifier(i))) {
+                wasted[i] = true;
+            }
+        }
+
+        // Collect checks that were dominated
+        double optimum = Double.NaN;
+        for (int i = 0; i < size; i++) {
+            if (getEvent(i) == EVENT_CHECK) {
+                if (optimum <= getBound(i)) {
+                    wasted[i] = true;
+                }
+                if ((getFlags(i) & FLAG_ANONYMOUS) != 0 && !(getLoss(i) >= optimum)) {
+                    optimum = getLoss(i);
+                }
+            }
+        }
+
+        // Prepare result
+        long[] result = new long[size];
+        int index = 0;
+        for (int i = 0; i < size; i++) {
+            if (wasted[i]) {
+                result[index++] = getIdentifier(i);
+            }
+        }
+        return Arrays.copyOf(result, index);
+    }
+
+    /**
+     * Re-executes all checks contained in this trace in the recorded order. Results known for
+     * transformations are ignored. The checker should be created for this purpose, without a
+     * transformation cache. A check is a mismatch if the privacy model or the minimal class size
+     * is fulfilled differently, or if the information loss differs from the recorded value.
+     * @param checker
+     * @param solutionSpace
+     * @return The number of checks with a result differing from the recorded result
+     */
+    public int replay(NodeChecker checker, SolutionSpace solutionSpace) {
+        int mismatches = 0;
+        for (int i = 0; i < getSize(); i++) {
+            if (getEvent(i) == EVENT_CHECK) {
+                NodeChecker.Result result = checker.recheck(solutionSpace.getTransformation(getIdentifier(i)), false);
+                boolean anonymous = result.privacyModelFulfilled;
+                boolean kAnonymous = result.minimalClassSizeFulfilled != null && result.minimalClassSizeFulfilled;
+                if (anonymous != ((getFlags(i) & FLAG_ANONYMOUS) != 0) ||
+                    kAnonymous != ((getFlags(i) & FLAG_K_ANONYMOUS) != 0) ||
+                    !isEqual(getLoss(i), toDouble(result.informationLoss))) {
+                    mismatches++;
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Records an event
+     * @param transformation
+     * @param phase
+     * @param event
+     * @param result The result of the check, if any
+     */
+    public void record(Transformation transformation, byte phase, byte event, NodeChecker.Result result) {
+        byte flags = 0;
+        if (result != null) {
+            flags |= result.privacyModelFulfilled ? FLAG_ANONYMOUS : 0;
+            flags |= result.minimalClassSizeFulfilled != null && result.minimalClassSizeFulfilled ? FLAG_K_ANONYMOUS : 0;
+        }
+        record(transformation.getIdentifier(),
+               phase,
+               event,
+               flags,
+               toDouble(transformation.getInformationLoss()),
+               toDouble(transformation.getLowerBound()));
+    }
+
+    /**
+     * Records an event
+     * @param identifier
+     * @param phase
+     * @param event
+     * @param flags
+     * @param loss
+     * @param bound
+     */
+    public void record(long identifier, byte phase, byte event, byte flags, double loss, double bound) {
+        int position = (int) (count % identifiers.length);
+        identifiers[position] = identifier;
+        phases[position] = phase;
+        events[position] = event;
+        this.flags[position] = flags;
+        losses[position] = loss;
+        bounds[position] = bound;
+        count++;
+    }
+
+    /**
+     * Writes the retained events to the given file
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            int size = getSize();
+            output.writeInt(MAGIC);
+            output.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                output.writeLong(getIdentifier(i));
+                output.writeByte(getPhase(i));
+                output.writeByte(getEvent(i));
+                output.writeByte(getFlags(i));
+                output.writeDouble(getLoss(i));
+                output.writeDouble(getBound(i));
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Returns the position of the given event in the ring buffer
+     * @param index
+     * @return
+     */
+    private int getPosition(int index) {
+        if (index < 0 || index >= getSize()) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return (int) ((count - getSize() + index) % identifiers.length);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.deidentifier.arx.criteria.AverageReidentificationRisk;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.criteria.PrivacyCriterion;
+import org.deidentifier.arx.framework.check.groupify.HashGroupify;
+import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
+
+/**
+ * Evaluates a family of threshold models, i.e. k-anonymity and average re-identification risk, on the
+ * equivalence classes of a groupify operator. Both models are enforced by suppressing the smallest
+ * classes, which is simulated by setting the outlier flags of the classes. This means that all models
+ * are evaluated with one groupify operation. The original flags must be restored afterwards.
+ */
+class ThresholdEvaluator {
+
+    /** Orders classes by size */
+    private static final Comparator<HashGroupifyEntry> COMPARATOR = new Comparator<HashGroupifyEntry>() {
+        @Override
+        public int compare(HashGroupifyEntry o1, HashGroupifyEntry o2) {
+            return Integer.compare(o1.count, o2.count);
+        }
+    };
+
+    /** Minimal class sizes, 0 for average risk */
+    private final int[]                                k;
+
+    /** Average risk thresholds, 1 for k-anonymity */
+    private final double[]                             risk;
+
+    /** The maximal number of suppressed records */
+    private final int                                  maxOutliers;
+
+    /** Non-empty classes, ordered by size */
+    private HashGroupifyEntry[]                        entries     = new HashGroupifyEntry[0];
+
+    /** The original outlier flags */
+    private boolean[]                                  flags       = new boolean[0];
+
+    /** The number of classes */
+    private int                                        size        = 0;
+
+    /** The number of records */
+    private int                                        records     = 0;
+
+    /**
+     * Creates a new instance
+     * @param models
+     * @param maxOutliers
+     */
+    ThresholdEvaluator(List<PrivacyCriterion> models, int maxOutliers) {
+        this.k = new int[models.size()];
+        this.risk = new double[models.size()];
+        this.maxOutliers = maxOutliers;
+        for (int i = 0; i < models.size(); i++) {
+            PrivacyCriterion model = models.get(i);
+            if (model instanceof KAnonymity) {
+                k[i] = ((KAnonymity) model).getK();
+                risk[i] = 1d;
+            } else if (model instanceof AverageReidentificationRisk) {
+                k[i] = 0;
+                risk[i] = model.getRiskThresholdMarketer();
+            } else {
+                throw new IllegalArgumentException("Unsupported threshold model: " + model);
+            }
+        }
+    }
+
+    /**
+     * Sets the outlier flags of the exported classes according to the given model
+     * @param index
+     * @return Whether the model can be enforced without exceeding the suppression limit
+     */
+    boolean apply(int index) {
+
+        // Determine the number of classes to suppress
+        int suppressedClasses = 0;
+        int suppressedRecords = 0;
+        if (k[index] > 0) {
+            while (suppressedClasses < size && entries[suppressedClasses].count < k[index]) {
+                suppressedRecords += entries[suppressedClasses++].count;
+            }
+        } else {
+            while (suppressedClasses < size &&
+                   (double) (size - suppressedClasses) > risk[index] * (double) (records - suppressedRecords)) {
+                suppressedRecords += entries[suppressedClasses++].count;
+            }
+        }
+
+        // Set flags
+        for (int i = 0; i < size; i++) {
+            entries[i].isNotOutlier = i >= suppressedClasses;
+        }
+        return suppressedRecords <= maxOutliers;
+    }
+
+    /**
+     * Exports the non-empty classes of the given operator and their outlier flags
+     * @param groupify
+     */
+    void export(HashGroupify groupify) {
+
+        // Prepare
+        int capacity = groupify.getNumberOfEquivalenceClasses();
+        if (entries.length < capacity) {
+            entries = new HashGroupifyEntry[capacity];
+            flags = new boolean[capacity];
+        }
+        size = 0;
+        records = 0;
+
+        // Collect
+        HashGroupifyEntry entry = groupify.getFirstEquivalenceClass();
+        while (entry != null) {
+            if (entry.count > 0) {
+                if (size == entries.length) {
+                    entries = Arrays.copyOf(entries, size * 2 + 16);
+                    flags = Arrays.copyOf(flags, size * 2 + 16);
+                }
+                entries[size++] = entry;
+                records += entry.count;
+            }
+            entry = entry.nextOrdered;
+        }
+
+        // Sort and store flags
+        Arrays.sort(entries, 0, size, COMPARATOR);
+        for (int i = 0; i < size; i++) {
+            flags[i] = entries[i].isNotOutlier;
+        }
+    }
+
+    /**
+     * Returns the number of models
+     * @return
+     */
+    int getNumberOfModels() {
+        return k.length;
+    }
+
+    /**
+     * Restores the original outlier flags and releases the classes
+     */
+    void restore() {
+        for (int i = 0; i < size; i++) {
+            entries[i].isNotOutlier = flags[i];
+            entries[i] = null;
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import org.deidentifier.arx.ARXConfiguration.ARXConfigurationInternal;
+import org.deidentifier.arx.ARXCostBenefitConfiguration;
+import org.deidentifier.arx.DataSubset;
+import org.deidentifier.arx.criteria.AverageReidentificationRisk;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.criteria.PrivacyCriterion;
+import org.deidentifier.arx.criteria.ProfitabilityJournalist;
+import org.deidentifier.arx.criteria.ProfitabilityJournalistNoAttack;
+import org.deidentifier.arx.criteria.ProfitabilityProsecutor;
+import org.deidentifier.arx.criteria.ProfitabilityProsecutorNoAttack;
+import org.deidentifier.arx.framework.check.NodeChecker.Result;
+import org.deidentifier.arx.framework.data.DataManager;
+import org.deidentifier.arx.framework.data.Fingerprint;
+import org.deidentifier.arx.framework.data.GeneralizationHierarchy;
+import org.deidentifier.arx.metric.InformationLoss;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.metric.MetricConfiguration;
+import org.deidentifier.arx.metric.v2.MetricSDNMPublisherPayout;
+
+/**
+ * A process-wide cache for the results of checking transformations. Entries are addressed
+ * by a fingerprint of the input data, the privacy models and the quality model, as well as
+ * the generalization vector of a transformation. This allows repeated anonymizations of
+ * the same data to skip transforming and grouping the data. The cache can be written to
+ * and read from disk. It is not used for searches with secondary quality models or threshold
+ * models, which must evaluate every transformation, and for privacy models whose parameters
+ * are not known. The fingerprint of the data is computed once per data buffer.
+ */
+public class TransformationCache {
+
+    /**
+     * The cached outcome of a check
+     */
+    private static class Entry implements Serializable {
+
+        /** SVUID */
+        private static final long        serialVersionUID = -3016283475396618391L;
+
+        /** Overall anonymity. */
+        private final Boolean            privacyModelFulfilled;
+
+        /** k-Anonymity sub-criterion. */
+        private final Boolean            minimalClassSizeFulfilled;
+
+        /** Information loss. */
+        private final InformationLoss<?> informationLoss;
+
+        /** Lower bound. */
+        private final InformationLoss<?> lowerBound;
+
+        /**
+         * Creates a new instance
+         * @param result
+         */
+        private Entry(Result result) {
+            this.privacyModelFulfilled = result.privacyModelFulfilled;
+            this.minimalClassSizeFulfilled = result.minimalClassSizeFulfilled;
+            this.informationLoss = result.informationLoss == null ? null : result.informationLoss.clone();
+            this.lowerBound = result.lowerBound == null ? null : result.lowerBound.clone();
+        }
+    }
+
+    /**
+     * The key of an entry
+     */
+    private static class Key implements Serializable {
+
+        /** SVUID */
+        private static final long serialVersionUID = 2427734316519745425L;
+
+        /** Fingerprint of data and configuration */
+        private final String      fingerprint;
+
+        /** Generalization vector */
+        private final int[]       generalization;
+
+        /** Has information loss been measured for non-anonymous transformations */
+        private final boolean     forceMeasureInfoLoss;
+
+        /** Hash code */
+        private final int         hashCode;
+
+        /**
+         * Creates a new instance
+         * @param fingerprint
+         * @param generalization
+         * @param forceMeasureInfoLoss
+         */
+        private Key(String fingerprint, int[] generalization, boolean forceMeasureInfoLoss) {
+            this.fingerprint = fingerprint;
+            this.generalization = generalization;
+            this.forceMeasureInfoLoss = forceMeasureInfoLoss;
+            this.hashCode = 31 * (31 * fingerprint.hashCode() + Arrays.hashCode(generalization)) + (forceMeasureInfoLoss ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            Key other = (Key) obj;
+            return forceMeasureInfoLoss == other.forceMeasureInfoLoss &&
+                   fingerprint.equals(other.fingerprint) &&
+                   Arrays.equals(generalization, other.generalization);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /** Maximal number of entries, least recently used entries are evicted */
+    private static final int                 MAX_SIZE     = 1000000;
+
+    /** Privacy models whose parameters are covered by fingerprints */
+    private static final Set<Class<?>>       MODELS       = new HashSet<Class<?>>(Arrays.<Class<?>>asList(KAnonymity.class,
+                                                                                                          AverageReidentificationRisk.class,
+                                                                                                          ProfitabilityProsecutor.class,
+                                                                                                          ProfitabilityJournalist.class,
+                                                                                                          ProfitabilityProsecutorNoAttack.class,
+                                                                                                          ProfitabilityJournalistNoAttack.class));
+
+    /** Fingerprints of data buffers and subsets, addressed by identity */
+    private static final Map<Object, String> FINGERPRINTS = Collections.synchronizedMap(new WeakHashMap<Object, String>());
+
+    /** The cache */
+    private static final Map<Key, Entry>     CACHE        = Collections.synchronizedMap(new LinkedHashMap<Key, Entry>(1024, 0.75f, true) {
+                                                                private static final long serialVersionUID = -8204376498226451562L;
+                                                                @Override
+                                                                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                                                                    return size() > MAX_SIZE;
+                                                                }
+                                                            });
+
+    /**
+     * Removes all entries
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Reads entries from the given file, which has been written with {@link #write(File)}
+     * @param file
+     * @throws IOException
+     */
+    public static void read(File file) throws IOException {
+        ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                Key key = (Key) input.readObject();
+                Entry entry = (Entry) input.readObject();
+                CACHE.put(key, entry);
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Returns the number of entries
+     * @return
+     */
+    public static int size() {
+        return CACHE.size();
+    }
+
+    /**
+     * Writes all entries to the given file
+     * @param file
+     * @throws IOException
+     */
+    public static void write(File file) throws IOException {
+
+        // Copy to prevent concurrent modifications
+        List<Map.Entry<Key, Entry>> entries;
+        synchronized (CACHE) {
+            entries = new ArrayList<Map.Entry<Key, Entry>>(CACHE.entrySet());
+        }
+
+        // Write
+        ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(entries.size());
+            for (Map.Entry<Key, Entry> entry : entries) {
+                output.writeObject(entry.getKey());
+                output.writeObject(entry.getValue());
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /** The fingerprint of the data and the configuration */
+    private final String fingerprint;
+
+    /**
+     * Creates a new instance
+     * @param fingerprint
+     */
+    private TransformationCache(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Creates a new instance for the given data and configuration. Returns null if the
+     * configuration is not supported.
+     * @param manager
+     * @param metric
+     * @param config
+     * @return
+     */
+    static TransformationCache create(DataManager manager, Metric<?> metric, ARXConfigurationInternal config) {
+        String fingerprint = getFingerprint(manager, metric, config);
+        return fingerprint == null ? null : new TransformationCache(fingerprint);
+    }
+
+    /**
+     * Looks up the given transformation and stores the outcome in the given result
+     * @param generalization
+     * @param forceMeasureInfoLoss
+     * @param result
+     * @return Whether the transformation has been found
+     */
+    boolean get(int[] generalization, boolean forceMeasureInfoLoss, Result result) {
+        Entry entry = CACHE.get(new Key(fingerprint, generalization, forceMeasureInfoLoss));
+        if (entry == null) {
+            return false;
+        }
+        result.set(entry.privacyModelFulfilled,
+                   entry.minimalClassSizeFulfilled,
+                   entry.informationLoss == null ? null : entry.informationLoss.clone(),
+                   entry.lowerBound == null ? null : entry.lowerBound.clone());
+        return true;
+    }
+
+    /**
+     * Stores the outcome of checking the given transformation
+     * @param generalization
+     * @param forceMeasureInfoLoss
+     * @param result
+     */
+    void put(int[] generalization, boolean forceMeasureInfoLoss, Result result) {
+        CACHE.put(new Key(fingerprint, generalization.clone(), forceMeasureInfoLoss), new Entry(result));
+    }
+
+    /**
+     * Returns a fingerprint of the data of the given manager, which is computed once per buffer
+     * @param manager
+     * @return
+     */
+    private static String getFingerprint(DataManager manager) {
+
+        // Lookup
+        int[][] buffer = manager.getDataGeneralized().getArray();
+        String result = FINGERPRINTS.get(buffer);
+        if (result != null) {
+            return result;
+        }
+
+        // Compute
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.put(manager.getHeader());
+        fingerprint.put(buffer);
+        fingerprint.put(manager.getDataAnalyzed().getArray());
+        fingerprint.put(manager.getDataGeneralized().getDictionary().getMapping());
+        for (GeneralizationHierarchy hierarchy : manager.getHierarchies()) {
+            fingerprint.put(hierarchy.getArray());
+        }
+        fingerprint.put(manager.getHierarchiesMinLevels());
+        fingerprint.put(manager.getHierarchiesMaxLevels());
+        result = fingerprint.get();
+        FINGERPRINTS.put(buffer, result);
+        return result;
+    }
+
+    /**
+     * Returns a fingerprint of the given subset, which is computed once per subset
+     * @param subset
+     * @return
+     */
+    private static String getFingerprint(DataSubset subset) {
+
+        // Lookup
+        if (subset == null) {
+            return "";
+        }
+        int[] array = subset.getArray();
+        String result = FINGERPRINTS.get(array);
+        if (result != null) {
+            return result;
+        }
+
+        // Compute
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.put(array);
+        result = fingerprint.get();
+        FINGERPRINTS.put(array, result);
+        return result;
+    }
+
+    /**
+     * Computes a fingerprint of everything which influences the result of a check. Returns null
+     * if the parameters of a privacy model are not known.
+     * @param manager
+     * @param metric
+     * @param config
+     * @return
+     */
+    private static String getFingerprint(DataManager manager, Metric<?> metric, ARXConfigurationInternal config) {
+
+        // Prepare
+        Fingerprint fingerprint = new Fingerprint();
+
+        // Data
+        fingerprint.put(getFingerprint(manager));
+        fingerprint.put(getFingerprint(config.getSubset()));
+
+        // Privacy models
+        List<PrivacyCriterion> models = new ArrayList<PrivacyCriterion>(config.getPrivacyModels());
+        Collections.sort(models, new Comparator<PrivacyCriterion>() {
+            @Override
+            public int compare(PrivacyCriterion o1, PrivacyCriterion o2) {
+                return o1.getClass().getName().compareTo(o2.getClass().getName());
+            }
+        });
+        fingerprint.put(models.size());
+        for (PrivacyCriterion model : models) {
+            if (!MODELS.contains(model.getClass())) {
+                return null;
+            }
+            fingerprint.put(model.getClass().getName());
+            fingerprint.put(model.getRequirements());
+            fingerprint.put(model.getMinimalClassSize());
+            fingerprint.put(model.getRiskThresholdProsecutor());
+            fingerprint.put(model.getRiskThresholdJournalist());
+            fingerprint.put(model.getRiskThresholdMarketer());
+            if (model instanceof ProfitabilityJournalist) {
+                fingerprint.put(((ProfitabilityJournalist) model).isOptimize());
+            }
+        }
+        fingerprint.put(config.getAbsoluteMaxOutliers());
+        fingerprint.put(config.isSuppressionAlwaysEnabled());
+        fingerprint.put(config.isNaiveNoAttackEnabled());
+        fingerprint.put(config.isCensusDataEnabled());
+        ARXCostBenefitConfiguration costBenefit = config.getCostBenefitConfiguration();
+        fingerprint.put(costBenefit.getAdversaryCost());
+        fingerprint.put(costBenefit.getAdversaryGain());
+        fingerprint.put(costBenefit.getPublisherLoss());
+        fingerprint.put(costBenefit.getPublisherBenefit());
+
+        // Quality model
+        MetricConfiguration metricConfig = metric.getConfiguration();
+        fingerprint.put(metric.getClass().getName());
+        fingerprint.put(metricConfig.getGsFactor());
+        fingerprint.put(metricConfig.isMonotonic());
+        fingerprint.put(metricConfig.getAggregateFunction() == null ? null : metricConfig.getAggregateFunction().name());
+        if (metric instanceof MetricSDNMPublisherPayout) {
+            fingerprint.put(((MetricSDNMPublisherPayout) metric).isJournalistAttackerModel());
+        }
+        Map<String, Double> weights = config.getAttributeWeights();
+        fingerprint.put(weights == null ? -1 : weights.size());
+        if (weights != null) {
+            for (String attribute : new TreeSet<String>(weights.keySet())) {
+                fingerprint.put(attribute);
+                Double weight = weights.get(attribute);
+                fingerprint.put(weight == null ? Double.NaN : weight);
+            }
+        }
+        fingerprint.put(config.isEntropyExpressionSimplified());
+
+        // Return
+        return fingerprint.get();
+    }
+}
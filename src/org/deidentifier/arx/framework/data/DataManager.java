@@ -28,18 +28,12 @@ import org.deidentifier.arx.DataGeneralizationScheme;
 import org.deidentifier.arx.DataSubset;
 import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.RowSet;
-import org.deidentifier.arx.aggregates.HierarchyBuilder;
-import org.deidentifier.arx.aggregates.HierarchyBuilderIntervalBased;
-import org.deidentifier.arx.aggregates.HierarchyBuilderRedactionBased;
 import org.deidentifier.arx.criteria.EDDifferentialPrivacy;
 import org.deidentifier.arx.criteria.HierarchicalDistanceTCloseness;
 import org.deidentifier.arx.criteria.PrivacyCriterion;
 import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFunction;
 import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFunction.DistributionAggregateFunctionGeneralization;
-import org.deidentifier.arx.metric.v2.DomainShare;
-import org.deidentifier.arx.metric.v2.DomainShareInterval;
-import org.deidentifier.arx.metric.v2.DomainShareMaterialized;
-import org.deidentifier.arx.metric.v2.DomainShareRedaction;
+import org.deidentifier.arx.metric.v2.DomainShareTable;
 
 import cern.colt.Sorting;
 import cern.colt.function.IntComparator;
@@ -85,7 +79,7 @@ public class DataManager {
     private final DataDefinition                       definition;
 
     /** The domain shares */
-    private DomainShare[]                              shares;
+    private DomainShareTable[]                         shares;
 
     /** The original input header. */
     private final String[]                             header;
@@ -541,38 +535,11 @@ public class DataManager {
         return getDistribution(data, index, distinctValues);
     }
 
-    public DomainShare[] getDomainShares() {
+    public DomainShareTable[] getDomainShares() {
 
         // Build on-demand
         if (this.shares == null) {
-            
-            // Compute domain shares
-            this.shares = new DomainShare[dataGeneralized.getHeader().length];
-            for (int i=0; i<shares.length; i++) {
-                
-                // Extract info
-                String attribute = dataGeneralized.getHeader()[i];
-                String[][] hierarchy = definition.getHierarchy(attribute);
-                HierarchyBuilder<?> builder = definition.getHierarchyBuilder(attribute);
-                
-                // Create shares for redaction-based hierarchies
-                if (builder != null && (builder instanceof HierarchyBuilderRedactionBased) &&
-                    ((HierarchyBuilderRedactionBased<?>)builder).isDomainPropertiesAvailable()){
-                    this.shares[i] = new DomainShareRedaction((HierarchyBuilderRedactionBased<?>)builder);
-                    
-                 // Create shares for interval-based hierarchies
-                } else if (builder != null && (builder instanceof HierarchyBuilderIntervalBased)) {
-                    this.shares[i] = new DomainShareInterval<>((HierarchyBuilderIntervalBased<?>)builder,
-                                                           hierarchiesGeneralized[i].getArray(),
-                                                           dataGeneralized.getDictionary().getMapping()[i]);
-                    
-                // Create fallback-shares for materialized hierarchies
-                } else {
-                    this.shares[i] = new DomainShareMaterialized(hierarchy, 
-                                                            dataGeneralized.getDictionary().getMapping()[i],
-                                                            hierarchiesGeneralized[i].getArray());
-                }
-            }
+            this.shares = createDomainShares();
         }
         
         // Return
@@ -883,6 +850,26 @@ public class DataManager {
         return getTree(data, index, hierarchiesSensitive.get(attribute).map);
     }
     
+    /**
+     * Obtains the domain shares from the process-wide cache
+     * @return
+     */
+    private DomainShareTable[] createDomainShares() {
+
+        // Collect domain shares
+        DomainShareTable[] shares = new DomainShareTable[dataGeneralized.getHeader().length];
+        for (int i=0; i<shares.length; i++) {
+            
+            // Lookup or compute
+            String attribute = dataGeneralized.getHeader()[i];
+            shares[i] = DomainShareCache.get(definition.getHierarchy(attribute),
+                                             hierarchiesGeneralized[i].getArray(),
+                                             dataGeneralized.getDictionary().getMapping()[i],
+                                             definition.getHierarchyBuilder(attribute));
+        }
+        return shares;
+    }
+
     /**
      * Encodes the data.
      * 
@@ -966,7 +953,7 @@ public class DataManager {
      * Returns the data definitions
      * @return
      */
-    protected DataDefinition getDataDefinition() {
+    public DataDefinition getDataDefinition() {
         return this.definition;
     }
 }
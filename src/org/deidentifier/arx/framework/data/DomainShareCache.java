@@ -0,0 +1,201 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deidentifier.arx.aggregates.HierarchyBuilder;
+import org.deidentifier.arx.aggregates.HierarchyBuilderIntervalBased;
+import org.deidentifier.arx.aggregates.HierarchyBuilderRedactionBased;
+import org.deidentifier.arx.metric.v2.DomainShare;
+import org.deidentifier.arx.metric.v2.DomainShareInterval;
+import org.deidentifier.arx.metric.v2.DomainShareMaterialized;
+import org.deidentifier.arx.metric.v2.DomainShareRedaction;
+import org.deidentifier.arx.metric.v2.DomainShareTable;
+
+/**
+ * A process-wide cache for the domain shares of generalization hierarchies. Entries are addressed
+ * by a fingerprint of everything which influences the shares, i.e. the hierarchy, its encoded form,
+ * the dictionary and the hierarchy builder. This means that the shares of a hierarchy are computed
+ * only once, even if many data managers are created for it, and that entries can be written to and
+ * read from disk. Shares are stored as flattened tables.
+ */
+public class DomainShareCache {
+
+    /** Maximal number of entries, least recently used entries are evicted */
+    private static final int                           MAX_SIZE = 10000;
+
+    /** Entries addressed by content */
+    private static final Map<String, DomainShareTable> CACHE    = Collections.synchronizedMap(new LinkedHashMap<String, DomainShareTable>(64, 0.75f, true) {
+                                                                    private static final long serialVersionUID = 4203873415236458327L;
+                                                                    @Override
+                                                                    protected boolean removeEldestEntry(Map.Entry<String, DomainShareTable> eldest) {
+                                                                        return size() > MAX_SIZE;
+                                                                    }
+                                                                });
+
+    /**
+     * Removes all entries
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Reads entries from the given file, which has been written with {@link #write(File)}
+     * @param file
+     * @throws IOException
+     */
+    public static void read(File file) throws IOException {
+        ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                String key = input.readUTF();
+                DomainShareTable table = (DomainShareTable) input.readObject();
+                CACHE.put(key, table);
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Returns the number of entries
+     * @return
+     */
+    public static int size() {
+        return CACHE.size();
+    }
+
+    /**
+     * Writes all entries to the given file
+     * @param file
+     * @throws IOException
+     */
+    public static void write(File file) throws IOException {
+
+        // Copy to prevent concurrent modifications
+        List<Map.Entry<String, DomainShareTable>> entries;
+        synchronized (CACHE) {
+            entries = new ArrayList<Map.Entry<String, DomainShareTable>>(CACHE.entrySet());
+        }
+
+        // Write
+        ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            output.writeInt(entries.size());
+            for (Map.Entry<String, DomainShareTable> entry : entries) {
+                output.writeUTF(entry.getKey());
+                output.writeObject(entry.getValue());
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Returns the domain shares of the given hierarchy, computing them if they are not cached
+     * @param hierarchy
+     * @param encoded
+     * @param dictionary
+     * @param builder
+     * @return
+     */
+    static DomainShareTable get(String[][] hierarchy, int[][] encoded, String[] dictionary, HierarchyBuilder<?> builder) {
+
+        // Lookup
+        String key = getFingerprint(hierarchy, encoded, dictionary, builder);
+        DomainShareTable table = CACHE.get(key);
+        if (table != null) {
+            return table;
+        }
+
+        // Prepare
+        DomainShare share;
+
+        // Create shares for redaction-based hierarchies
+        if (builder != null && (builder instanceof HierarchyBuilderRedactionBased) &&
+            ((HierarchyBuilderRedactionBased<?>)builder).isDomainPropertiesAvailable()){
+            share = new DomainShareRedaction((HierarchyBuilderRedactionBased<?>)builder);
+
+         // Create shares for interval-based hierarchies
+        } else if (builder != null && (builder instanceof HierarchyBuilderIntervalBased)) {
+            share = new DomainShareInterval<>((HierarchyBuilderIntervalBased<?>)builder, encoded, dictionary);
+
+        // Create fallback-shares for materialized hierarchies
+        } else {
+            share = new DomainShareMaterialized(hierarchy, dictionary, encoded);
+        }
+
+        // Flatten, store and return
+        table = new DomainShareTable(share, encoded);
+        CACHE.put(key, table);
+        return table;
+    }
+
+    /**
+     * Computes a fingerprint of everything which influences the domain shares of a hierarchy
+     * @param hierarchy
+     * @param encoded
+     * @param dictionary
+     * @param builder
+     * @return
+     */
+    private static String getFingerprint(String[][] hierarchy, int[][] encoded, String[] dictionary, HierarchyBuilder<?> builder) {
+
+        // Data
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.put(hierarchy);
+        fingerprint.put(encoded);
+        fingerprint.put(dictionary);
+
+        // Builder
+        fingerprint.put(builder != null);
+        if (builder != null) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream output = new ObjectOutputStream(bytes);
+                output.writeObject(builder);
+                output.close();
+                fingerprint.put(builder.getClass().getName());
+                fingerprint.put(bytes.toByteArray());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // Return
+        return fingerprint.get();
+    }
+}
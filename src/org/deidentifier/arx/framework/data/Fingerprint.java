@@ -0,0 +1,202 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes a SHA-1 fingerprint of a sequence of values. Values are collected in a buffer,
+ * which is passed to the digest in blocks. Arrays and strings are prefixed with their length
+ * and null values are encoded explicitly, which means that different sequences of values do
+ * not share an encoding.
+ */
+public class Fingerprint {
+
+    /** Size of the buffer in bytes */
+    private static final int    BUFFER_SIZE = 1 << 16;
+
+    /** The digest */
+    private final MessageDigest digest;
+
+    /** The buffer */
+    private final ByteBuffer    buffer      = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Creates a new instance
+     */
+    public Fingerprint() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the fingerprint as a hex string. The instance must not be used afterwards.
+     * @return
+     */
+    public String get() {
+        flush();
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Adds the given array, which may be null
+     * @param array
+     */
+    public void put(byte[] array) {
+        put(array != null);
+        if (array == null) {
+            return;
+        }
+        put(array.length);
+        int offset = 0;
+        while (offset < array.length) {
+            ensure(1);
+            int length = Math.min(buffer.remaining(), array.length - offset);
+            buffer.put(array, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Adds the given value
+     * @param value
+     */
+    public void put(boolean value) {
+        ensure(1);
+        buffer.put((byte) (value ? 1 : 0));
+    }
+
+    /**
+     * Adds the given value
+     * @param value
+     */
+    public void put(double value) {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Adds the given value
+     * @param value
+     */
+    public void put(int value) {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Adds the given array, which may be null
+     * @param array
+     */
+    public void put(int[] array) {
+        put(array != null);
+        if (array == null) {
+            return;
+        }
+        put(array.length);
+        int offset = 0;
+        while (offset < array.length) {
+            ensure(4);
+            int length = Math.min(buffer.remaining() / 4, array.length - offset);
+            buffer.asIntBuffer().put(array, offset, length);
+            buffer.position(buffer.position() + length * 4);
+            offset += length;
+        }
+    }
+
+    /**
+     * Adds the given array, which may be null
+     * @param array
+     */
+    public void put(int[][] array) {
+        put(array != null);
+        if (array == null) {
+            return;
+        }
+        put(array.length);
+        for (int[] row : array) {
+            put(row);
+        }
+    }
+
+    /**
+     * Adds the given value, which may be null
+     * @param value
+     */
+    public void put(String value) {
+        put(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds the given array, which may be null
+     * @param array
+     */
+    public void put(String[] array) {
+        put(array != null);
+        if (array == null) {
+            return;
+        }
+        put(array.length);
+        for (String value : array) {
+            put(value);
+        }
+    }
+
+    /**
+     * Adds the given array, which may be null
+     * @param array
+     */
+    public void put(String[][] array) {
+        put(array != null);
+        if (array == null) {
+            return;
+        }
+        put(array.length);
+        for (String[] row : array) {
+            put(row);
+        }
+    }
+
+    /**
+     * Makes sure that the given number of bytes can be added to the buffer
+     * @param bytes
+     */
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Passes the content of the buffer to the digest
+     */
+    private void flush() {
+        digest.update(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
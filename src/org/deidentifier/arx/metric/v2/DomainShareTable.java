@@ -0,0 +1,116 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.metric.v2;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The domain shares of a hierarchy, flattened into one array per level which is indexed by the
+ * codes of the values on that level. The table is produced once from any kind of domain share,
+ * which means that evaluating shares does not involve map or tree lookups and that the call
+ * sites are not megamorphic when attributes use different types of hierarchies. Log-space values
+ * are stored alongside.
+ */
+public final class DomainShareTable implements Serializable {
+
+    /** SVUID */
+    private static final long serialVersionUID = 6377364419525096813L;
+
+    /** The size of the domain */
+    private final double      domainSize;
+
+    /** The smallest code on each level */
+    private final int[]       offsets;
+
+    /** Shares, level x (code - offset) */
+    private final double[][]  shares;
+
+    /** log10(1 / (share * domain size)), level x (code - offset) */
+    private final double[][]  logShares;
+
+    /**
+     * Creates a new instance
+     * @param share
+     * @param hierarchy The encoded hierarchy
+     */
+    public DomainShareTable(DomainShare share, int[][] hierarchy) {
+
+        // Prepare
+        int levels = hierarchy.length == 0 ? 0 : hierarchy[0].length;
+        this.domainSize = share.getDomainSize();
+        this.offsets = new int[levels];
+        this.shares = new double[levels][];
+        this.logShares = new double[levels][];
+
+        // For each level
+        for (int level = 0; level < levels; level++) {
+
+            // Determine range of codes
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int[] row : hierarchy) {
+                min = Math.min(min, row[level]);
+                max = Math.max(max, row[level]);
+            }
+
+            // Evaluate
+            offsets[level] = min;
+            shares[level] = new double[max - min + 1];
+            logShares[level] = new double[max - min + 1];
+            Arrays.fill(shares[level], Double.NaN);
+            Arrays.fill(logShares[level], Double.NaN);
+            for (int[] row : hierarchy) {
+                int index = row[level] - min;
+                if (Double.isNaN(shares[level][index])) {
+                    double value = share.getShare(row[level], level);
+                    shares[level][index] = value;
+                    logShares[level][index] = Math.log10(1d / (value * domainSize));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the size of the domain
+     * @return
+     */
+    public double getDomainSize() {
+        return domainSize;
+    }
+
+    /**
+     * Returns log10(1 / (share * domain size)) for the given value
+     * @param value
+     * @param level
+     * @return
+     */
+    public double getLogShare(int value, int level) {
+        return logShares[level][value - offsets[level]];
+    }
+
+    /**
+     * Returns the share of the given value
+     * @param value
+     * @param level
+     * @return
+     */
+    public double getShare(int value, int level) {
+        return shares[level][value - offsets[level]];
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2017 Fabian Prasser, Florian Kohlmayer and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.metric.v2;
+
+import java.util.Arrays;
+
+import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFunction;
+import org.deidentifier.arx.framework.check.groupify.HashGroupify;
+import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
+import org.deidentifier.arx.framework.lattice.Transformation;
+
+/**
+ * The non-empty equivalence classes of a groupify operator, exported into parallel primitive arrays.
+ * Walking the linked list of classes is separated from evaluating formulas, which can then be
+ * implemented as tight loops over the arrays. The arrays are reused across exports.
+ */
+class EquivalenceClassArrays {
+
+    /** Number of classes */
+    int      size     = 0;
+
+    /** Class sizes */
+    int[]    count    = new int[0];
+
+    /** Class sizes in the population */
+    int[]    pcount   = new int[0];
+
+    /** 1 if the class is suppressed, 0 otherwise */
+    double[] outlier  = new double[0];
+
+    /** Entropy-based information loss of a single record */
+    double[] loss     = new double[0];
+
+    /**
+     * Exports the classes and computes the entropy-based information loss of each class. The results
+     * are identical to MetricSDNMEntropyBasedInformationLoss.getEntropyBasedInformationLoss() with
+     * the simplified expression.
+     * @param transformation
+     * @param groupify
+     * @param shares
+     * @param microaggregationFunctions
+     * @param microaggregationStartIndex
+     * @param maxIL
+     */
+    void export(Transformation transformation,
+                HashGroupify groupify,
+                DomainShareTable[] shares,
+                DistributionAggregateFunction[] microaggregationFunctions,
+                int microaggregationStartIndex,
+                double maxIL) {
+
+        // Prepare
+        ensureCapacity(groupify.getNumberOfEquivalenceClasses());
+        int[] generalization = transformation.getGeneralization();
+        int size = 0;
+
+        // Export and multiply domain shares
+        HashGroupifyEntry entry = groupify.getFirstEquivalenceClass();
+        while (entry != null) {
+            if (entry.count > 0) {
+                double infoLoss = 1d;
+                for (int dimension = 0; dimension < shares.length; dimension++) {
+                    infoLoss *= shares[dimension].getShare(entry.key[dimension], generalization[dimension]);
+                }
+                if (microaggregationFunctions != null) {
+                    for (int dimension = 0; dimension < microaggregationFunctions.length; dimension++) {
+                        infoLoss *= microaggregationFunctions[dimension].getInformationLoss(entry.distributions[microaggregationStartIndex + dimension]);
+                    }
+                }
+                if (size == count.length) {
+                    ensureCapacity(size * 2 + 16);
+                }
+                count[size] = entry.count;
+                pcount[size] = entry.pcount;
+                outlier[size] = entry.isNotOutlier ? 0d : 1d;
+                loss[size] = infoLoss;
+                size++;
+            }
+            entry = entry.nextOrdered;
+        }
+        this.size = size;
+
+        // Finalize
+        for (int i = 0; i < size; i++) {
+            loss[i] = Math.log10(loss[i]) / maxIL + 1d;
+        }
+
+        // Check and fix rounding problems
+        for (int i = 0; i < size; i++) {
+            double result = loss[i];
+            if (Double.isNaN(result) || result <= -0.001d || result >= +1.001d) {
+                throw new IllegalStateException("Value (" + result + ") out of range [0,1]");
+            }
+            result = result < 0d ? 0d : result;
+            result = result > 1d ? 1d : result;
+            loss[i] = result;
+        }
+    }
+
+    /**
+     * Makes sure that the arrays can hold the given number of classes, retaining their content
+     * @param capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (count.length < capacity) {
+            count = Arrays.copyOf(count, capacity);
+            pcount = Arrays.copyOf(pcount, capacity);
+            outlier = Arrays.copyOf(outlier, capacity);
+            loss = Arrays.copyOf(loss, capacity);
+        }
+    }
+}
@@ -44,9 +44,6 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
     /** SVUID*/
     private static final long serialVersionUID = -2443537745262162075L;
 
-    /** Optimize */
-    public static boolean     OPTIMIZED        = true;
-
     /**
      * Implements the entropy-based IL model. Ignores record suppression. Returns the loss for exactly one record.
      * @param transformation
@@ -55,14 +52,16 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
      * @param functions
      * @param microaggregationStartIndex
      * @param maxIL
+     * @param simplified Use the simplified expression
      * @return
      */
     public static double getEntropyBasedInformationLoss(Transformation transformation, 
                                                         HashGroupifyEntry entry,
-                                                        DomainShare[] shares,
+                                                        DomainShareTable[] shares,
                                                         DistributionAggregateFunction[] microaggregationFunctions,
                                                         int microaggregationStartIndex,
-                                                        double maxIL) {
+                                                        double maxIL,
+                                                        boolean simplified) {
 
         // We transform the formula, to make evaluating it more efficient.
         //
@@ -90,7 +89,7 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
         
         double result = 0d;
         
-        if (OPTIMIZED) {
+        if (simplified) {
             
             double infoLoss = 1d;
             
@@ -114,9 +113,7 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
             for (int dimension = 0; dimension < shares.length; dimension++) {
                 int value = entry.key[dimension];
                 int level = generalization[dimension];
-                double share = shares[dimension].getShare(value, level);
-                double size = shares[dimension].getDomainSize();
-                result -= Math.log10(1d / (share * size));
+                result -= shares[dimension].getLogShare(value, level);
             }
             if (microaggregationFunctions != null && microaggregationFunctions.length != 0) {
                 // We don't use this in benchmarks
@@ -145,10 +142,10 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
      * @param domainSizes For microaggregated attributes
      * @return
      */
-    public static double getMaximalEntropyBasedInformationLoss(DomainShare[] domainShares,
+    public static double getMaximalEntropyBasedInformationLoss(DomainShareTable[] domainShares,
                                                                int[] domainSizes) {
         double maxIL = 1d;
-        for (DomainShare share : domainShares) {
+        for (DomainShareTable share : domainShares) {
             maxIL *= share.getDomainSize();
         }
         for (int size : domainSizes) {
@@ -159,11 +156,14 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
     }
 
     /** Domain shares for each dimension. */
-    private DomainShare[]                     shares;
+    private DomainShareTable[]                shares;
 
     /** MaxIL */
     private double                            maxIL;
 
+    /** Use the simplified expression */
+    private boolean                           simplified;
+
     /**
      * Creates a new instance. Default constructor which treats all transformation methods equally.
      */
@@ -253,7 +253,8 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
                                                                              shares,
                                                                              microaggregationFunctions,
                                                                              microaggregationStartIndex,
-                                                                             maxIL);
+                                                                             maxIL,
+                                                                             simplified);
                 real += entry.isNotOutlier ? gFactor * loss : sFactor * entry.count;
                 bound += gFactor * loss;
             }
@@ -277,7 +278,8 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
                                                                       shares,
                                                                       microaggregationFunctions,
                                                                       microaggregationStartIndex,
-                                                                      maxIL);
+                                                                      maxIL,
+                                                                      simplified);
         double loss = entry.isNotOutlier ? gFactor * bound : sFactor * entry.count;
         return super.createInformationLoss(loss, gFactor * bound);
     }
@@ -302,7 +304,8 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
                                                                                                       shares,
                                                                                                       null,
                                                                                                       0,
-                                                                                                      maxIL);
+                                                                                                      maxIL,
+                                                                                                      simplified);
             entry = entry.nextOrdered;
         }
         
@@ -315,7 +318,7 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
      * 
      * @return
      */
-    protected DomainShare[] getShares() {
+    protected DomainShareTable[] getShares() {
         return this.shares;
     }
 
@@ -334,5 +337,6 @@ public class MetricSDNMEntropyBasedInformationLoss extends AbstractMetricSingleD
 
         // Calculate MaxIL
         this.maxIL = getMaximalEntropyBasedInformationLoss(this.shares, super.getMicroaggregationDomainSizes());
+        this.simplified = config.isEntropyExpressionSimplified();
     }
 }
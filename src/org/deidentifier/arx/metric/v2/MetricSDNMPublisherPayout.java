@@ -17,11 +17,6 @@
 
 package org.deidentifier.arx.metric.v2;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.ARXCostBenefitConfiguration;
 import org.deidentifier.arx.DataDefinition;
@@ -31,7 +26,6 @@ import org.deidentifier.arx.framework.check.groupify.HashGroupify;
 import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
 import org.deidentifier.arx.framework.data.Data;
 import org.deidentifier.arx.framework.data.DataManager;
-import org.deidentifier.arx.framework.data.Dictionary;
 import org.deidentifier.arx.framework.data.GeneralizationHierarchy;
 import org.deidentifier.arx.framework.lattice.Transformation;
 import org.deidentifier.arx.metric.InformationLossWithBound;
@@ -59,14 +53,11 @@ public class MetricSDNMPublisherPayout extends AbstractMetricSingleDimensional {
     /** Parameter strings */
     private static final String         MAXIMAL_PAYOUT   = "Theoretical maximum";
 
-    /** Hook for use of census data */
-    public static boolean               USE_CENSUS_DATA  = false;
-
     /** Configuration for the Stackelberg game */
     private ARXCostBenefitConfiguration config;
 
     /** Domain shares for each dimension. */
-    private DomainShare[]               shares;
+    private DomainShareTable[]          shares;
 
     /** Maximal information loss */
     private double                      maxIL;
@@ -79,8 +70,30 @@ public class MetricSDNMPublisherPayout extends AbstractMetricSingleDimensional {
 
     /** Maximal payout */
     private QualityMetadata<Double>     maximalPayout;
+
+    /** Use census data */
+    private boolean                     census;
+
+    /** Use the simplified expression for entropy-based information loss */
+    private boolean                     simplified;
     
-    private Map<Integer, Set<String>>[] CENSUS_map = null;
+    /** Census ids, [attribute][code]->ids */
+    private int[][][]                   CENSUS_ids = null;
+
+    /** Census dimension of each attribute */
+    private int[]                       CENSUS_dimensions = null;
+
+    /** Header of the generalized data, for translating hierarchies into census ids */
+    private String[]                    header;
+
+    /** Hierarchies, for translating them into census ids */
+    private GeneralizationHierarchy[]   hierarchies;
+
+    /** Dictionary of the generalized data, for translating hierarchies into census ids */
+    private String[][]                  dictionary;
+
+    /** Equivalence classes exported into arrays, reused across evaluations */
+    private transient EquivalenceClassArrays classes;
 
     /**
      * Creates a new instance. Default constructor which treats all transformation methods equally.
@@ -149,6 +162,14 @@ public class MetricSDNMPublisherPayout extends AbstractMetricSingleDimensional {
         return "Publisher benefit";
     }
 
+    /**
+     * Returns whether success probabilities are derived from census data
+     * @return
+     */
+    public boolean isCensusDataEnabled() {
+        return this.census;
+    }
+
     @Override
     public boolean isAbleToHandleMicroaggregation() {
         return true;
@@ -175,6 +196,16 @@ public class MetricSDNMPublisherPayout extends AbstractMetricSingleDimensional {
         return !this.journalistAttackerModel;
     }
 
+    /**
+     * Sets whether success probabilities are derived from census data. The value is initialized
+     * from the configuration and may be changed afterwards, e.g. to evaluate the output of a
+     * specific transformation with census data.
+     * @param enabled
+     */
+    public void setCensusDataEnabled(boolean enabled) {
+        this.census = enabled;
+    }
+
     @Override
     public String toString() {
         String result = "PublisherBenefit (" + (journalistAttackerModel ? "Journalist" : "Prosecutor");
@@ -204,19 +235,11 @@ public class MetricSDNMPublisherPayout extends AbstractMetricSingleDimensional {
      * @return
      */
     private double getSuccessProbabilityCensus(HashGroupifyEntry entry) {
-        if (CENSUS_map == null) {
-            CENSUS_map = getCensusMap();
-        }
-        double size = 0d;
-        for(String value0 : CENSUS_map[0].get(entry.key[0])) {
-            for(String value1 : CENSUS_map[1].get(entry.key[1])) {
-                for(String value2 : CENSUS_map[2].get(entry.key[2])) {
-                    for(String value3 : CENSUS_map[3].get(entry.key[3])) {
-                        size += PopulationStatistics.getSize(new String[]{value0, value1, value2, value3});
-                    }    
-                }    
-            }    
+        if (CENSUS_ids == null) {
+            CENSUS_dimensions = PopulationStatistics.getDimensions(header);
+            CENSUS_ids = PopulationStatistics.getIds(header, hierarchies, dictionary);
         }
+        double size = PopulationStatistics.getSize(CENSUS_ids, CENSUS_dimensions, entry.key);
         if (size == 0d) {
             throw new RuntimeException("This record does not exist in the population!");
         }
@@ -245,25 +268,46 @@ public class MetricSDNMPublisherPayout extends AbstractMetricSingleDimensional {
         DistributionAggregateFunction[] microaggregationFunctions = super.getMicroaggregationFunctions();
         int microaggregationStartIndex = super.getMicroaggregationStartIndex();
         
-        // Compute
-        while (entry != null) {
-            if (entry.count > 0) {
-
-                double adversarySuccessProbability = USE_CENSUS_DATA ? this.getSuccessProbabilityCensus(entry) : this.getSuccessProbability(entry);
-                double informationLoss = MetricSDNMEntropyBasedInformationLoss.getEntropyBasedInformationLoss(transformation,
-                                                                                                              entry,
-                                                                                                              shares,
-                                                                                                              microaggregationFunctions,
-                                                                                                              microaggregationStartIndex,
-                                                                                                              maxIL);
-                double realPayout = modelRisk.getExpectedPublisherPayout(informationLoss, adversarySuccessProbability);
-                double boundPayout = modelRisk.getExpectedPublisherPayout(informationLoss, 0d);
-                real += !entry.isNotOutlier ? (sFactor * entry.count * maxPayout) : 
-                                              (gFactor * entry.count * (maxPayout - realPayout));
-                bound += gFactor * entry.count * (maxPayout - boundPayout);
-                payout += !entry.isNotOutlier ? 0d : entry.count * realPayout;
+        // Compute over arrays, if possible
+        if (!census && simplified) {
+            EquivalenceClassArrays classes = getClasses(transformation, groupify, microaggregationFunctions, microaggregationStartIndex);
+            int size = classes.size;
+            int[] count = classes.count;
+            int[] pcount = classes.pcount;
+            double[] outlier = classes.outlier;
+            double[] loss = classes.loss;
+            for (int i = 0; i < size; i++) {
+                double adversarySuccessProbability = !journalistAttackerModel || pcount[i] == 0 ? 1d / count[i] : 1d / pcount[i];
+                double realPayout = modelRisk.getExpectedPublisherPayout(loss[i], adversarySuccessProbability);
+                double boundPayout = modelRisk.getExpectedPublisherPayout(loss[i], 0d);
+                real += outlier[i] != 0d ? (sFactor * count[i] * maxPayout) : 
+                                           (gFactor * count[i] * (maxPayout - realPayout));
+                bound += gFactor * count[i] * (maxPayout - boundPayout);
+                payout += outlier[i] != 0d ? 0d : count[i] * realPayout;
+            }
+        } else {
+            
+            // Compute
+            while (entry != null) {
+                if (entry.count > 0) {
+
+                    double adversarySuccessProbability = census ? this.getSuccessProbabilityCensus(entry) : this.getSuccessProbability(entry);
+                    double informationLoss = MetricSDNMEntropyBasedInformationLoss.getEntropyBasedInformationLoss(transformation,
+                                                                                                                  entry,
+                                                                                                                  shares,
+                                                                                                                  microaggregationFunctions,
+                                                                                                                  microaggregationStartIndex,
+                                                                                                                  maxIL,
+                                                                                                                  simplified);
+                    double realPayout = modelRisk.getExpectedPublisherPayout(informationLoss, adversarySuccessProbability);
+                    double boundPayout = modelRisk.getExpectedPublisherPayout(informationLoss, 0d);
+                    real += !entry.isNotOutlier ? (sFactor * entry.count * maxPayout) : 
+                                                  (gFactor * entry.count * (maxPayout - realPayout));
+                    bound += gFactor * entry.count * (maxPayout - boundPayout);
+                    payout += !entry.isNotOutlier ? 0d : entry.count * realPayout;
+                }
+                entry = entry.nextOrdered;
             }
-            entry = entry.nextOrdered;
         }
         
         // Return
@@ -289,7 +333,8 @@ public class MetricSDNMPublisherPayout extends AbstractMetricSingleDimensional {
                                                                                                       shares,
                                                                                                       microaggregationFunctions,
                                                                                                       microaggregationStartIndex,
-                                                                                                      maxIL);
+                                                                                                      maxIL,
+                                                                                                      simplified);
         double maxPayout = this.config.getPublisherBenefit();
         double realPayout = modelRisk.getExpectedPublisherPayout(informationLoss, adversarySuccessProbability);
         double boundPayout = modelRisk.getExpectedPublisherPayout(informationLoss, 0d);
@@ -315,22 +360,31 @@ public class MetricSDNMPublisherPayout extends AbstractMetricSingleDimensional {
         double gFactor = super.getGeneralizationFactor();
         double maxPayout = this.config.getPublisherBenefit();
         HashGroupifyEntry entry = groupify.getFirstEquivalenceClass();
-        while (entry != null) {
-            if (entry.count > 0) {
-                double informationLoss = MetricSDNMEntropyBasedInformationLoss.getEntropyBasedInformationLoss(transformation, entry, shares, null, 0, maxIL);
-                double boundPayout = modelRisk.getExpectedPublisherPayout(informationLoss, 0d);
-                bound += gFactor * entry.count * (maxPayout - boundPayout);
+        
+        // Compute over arrays, if possible
+        if (simplified) {
+            EquivalenceClassArrays classes = getClasses(transformation, groupify, null, 0);
+            int size = classes.size;
+            int[] count = classes.count;
+            double[] loss = classes.loss;
+            for (int i = 0; i < size; i++) {
+                bound += gFactor * count[i] * (maxPayout - modelRisk.getExpectedPublisherPayout(loss[i], 0d));
+            }
+        } else {
+            while (entry != null) {
+                if (entry.count > 0) {
+                    double informationLoss = MetricSDNMEntropyBasedInformationLoss.getEntropyBasedInformationLoss(transformation, entry, shares, null, 0, maxIL, simplified);
+                    double boundPayout = modelRisk.getExpectedPublisherPayout(informationLoss, 0d);
+                    bound += gFactor * entry.count * (maxPayout - boundPayout);
+                }
+                entry = entry.nextOrdered;
             }
-            entry = entry.nextOrdered;
         }
         
         // Return
         return new ILSingleDimensional(bound);
     }
     
-    private GeneralizationHierarchy[] hierarchies;
-    private Dictionary dictionary;
-
     @Override
     protected void initializeInternal(final DataManager manager,
                                       final DataDefinition definition,
@@ -341,8 +395,6 @@ public class MetricSDNMPublisherPayout extends AbstractMetricSingleDimensional {
         super.initializeInternal(manager, definition, input, hierarchies, config);
 
         // Compute domain shares
-        this.hierarchies = hierarchies;
-        this.dictionary = manager.getDataGeneralized().getDictionary();
         this.shares =  manager.getDomainShares();
         this.config = config.getCostBenefitConfiguration();
         this.modelRisk = new RiskModelCostBenefit(this.config);
@@ -350,29 +402,33 @@ public class MetricSDNMPublisherPayout extends AbstractMetricSingleDimensional {
                 
         // Calculate MaxIL
         this.maxIL = MetricSDNMEntropyBasedInformationLoss.getMaximalEntropyBasedInformationLoss(this.shares, super.getMicroaggregationDomainSizes());
+        this.census = config.isCensusDataEnabled();
+        this.simplified = config.isEntropyExpressionSimplified();
+
+        // Census ids are derived on first use, as census data may be enabled afterwards
+        this.header = manager.getDataGeneralized().getHeader();
+        this.hierarchies = hierarchies;
+        this.dictionary = manager.getDataGeneralized().getDictionary().getMapping();
+        this.CENSUS_ids = null;
+        this.CENSUS_dimensions = null;
     }
 
     /**
-     * Creates the census map
+     * Exports the equivalence classes of the given groupify operator into arrays
+     * @param transformation
+     * @param groupify
+     * @param microaggregationFunctions
+     * @param microaggregationStartIndex
      * @return
      */
-    private Map<Integer, Set<String>>[] getCensusMap() {
-        @SuppressWarnings("unchecked")
-        Map<Integer, Set<String>>[] result = new Map[4];
-        for (int i=0; i<hierarchies.length; i++) {
-            result[i] = new HashMap<Integer, Set<String>>();
-            int[][] array = hierarchies[i].getArray();
-            for (int column = 0; column < array[0].length; column++) {
-                for (int row = 0; row < array.length; row++) {
-                    String value = dictionary.getMapping()[i][array[row][0]];
-                    int key = array[row][column];
-                    if (!result[i].containsKey(key)) {
-                        result[i].put(key, new HashSet<String>());
-                    }
-                    result[i].get(key).add(value);
-                }
-            }
+    private EquivalenceClassArrays getClasses(Transformation transformation,
+                                              HashGroupify groupify,
+                                              DistributionAggregateFunction[] microaggregationFunctions,
+                                              int microaggregationStartIndex) {
+        if (classes == null) {
+            classes = new EquivalenceClassArrays();
         }
-        return result;
+        classes.export(transformation, groupify, shares, microaggregationFunctions, microaggregationStartIndex, maxIL);
+        return classes;
     }
 }